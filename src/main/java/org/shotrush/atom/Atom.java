@@ -18,19 +18,25 @@ import org.shotrush.atom.listener.PlayerConnectionListener;
 import org.shotrush.atom.listener.SkillEventListener;
 import org.shotrush.atom.manager.PlayerDataManager;
 import org.shotrush.atom.milestone.MilestoneManager;
+import org.shotrush.atom.storage.SQLiteSettings;
 import org.shotrush.atom.storage.SQLiteStorage;
+import org.shotrush.atom.storage.ShardedSQLiteStorage;
 import org.shotrush.atom.storage.StorageProvider;
+import org.shotrush.atom.storage.WriteBehindQueue;
+import org.shotrush.atom.storage.XpJournal;
 import org.shotrush.atom.tree.SkillTree;
 import org.shotrush.atom.tree.SkillTreeRegistry;
 
 import java.nio.file.Path;
 import java.util.List;
+import java.util.concurrent.CompletionException;
 
 public final class Atom extends JavaPlugin {
 
     private AtomConfig config;
     private StorageProvider storage;
     private PlayerDataManager dataManager;
+    private XpJournal journal;
     private SkillTreeRegistry treeRegistry;
     private XpEngine xpEngine;
     private EffectManager effectManager;
@@ -76,7 +82,24 @@ public final class Atom extends JavaPlugin {
             
             if (dataManager != null) {
                 getLogger().info("Saving all player data...");
-                dataManager.saveAllPlayerData().join();
+                if (xpEngine != null) {
+                    dataManager.getCachedPlayers().forEach(playerId ->
+                        dataManager.getCachedPlayerData(playerId).ifPresent(xpEngine::flushPendingXp));
+                }
+                XpJournal.Checkpoint checkpoint = journal != null ? journal.beginCheckpoint() : null;
+                try {
+                    dataManager.checkpoint().join();
+                    if (checkpoint != null) {
+                        checkpoint.complete();
+                    }
+                } catch (CompletionException e) {
+                    getLogger().severe("Final save failed, keeping XP journal for replay: " + e.getMessage());
+                }
+                dataManager.shutdown();
+            }
+            
+            if (journal != null) {
+                journal.close();
             }
 
             if (storage != null) {
@@ -93,15 +116,42 @@ public final class Atom extends JavaPlugin {
     
     public void loadConfiguration() {
         reloadConfig();
-        this.config = AtomConfig.loadFrom(getConfig());
+        this.config = AtomConfig.loadFrom(getConfig(), getLogger());
         getLogger().info("Configuration loaded");
     }
 
     private void initializeStorage() {
         Path databasePath = getDataFolder().toPath().resolve("atom.db");
-        storage = new SQLiteStorage(databasePath);
-        storage.initialize().join();
-        getLogger().info("Database initialized at: " + databasePath);
+        Path shardDirectory = getDataFolder().toPath().resolve("shards");
+        SQLiteSettings settings = new SQLiteSettings(
+            config.sqliteSynchronous(),
+            config.sqliteMmapSize(),
+            config.sqliteCacheSize(),
+            config.sqliteTempStore(),
+            config.sqliteReadPoolSize(),
+            SQLiteSettings.RecordFormat.fromString(config.storageFormat()),
+            SQLiteSettings.ExecutorMode.fromString(config.sqliteExecutor())
+        );
+        
+        if (config.storageShards() > 1 || ShardedSQLiteStorage.layoutExists(shardDirectory)) {
+            storage = new ShardedSQLiteStorage(shardDirectory, databasePath, config.storageShards(), settings,
+                getLogger());
+            storage.initialize().join();
+            getLogger().info("Database initialized with " + config.storageShards() + " shards at: " + shardDirectory);
+        } else {
+            storage = new SQLiteStorage(databasePath, settings);
+            storage.initialize().join();
+            getLogger().info("Database initialized at: " + databasePath);
+        }
+        
+        if (config.journalEnabled()) {
+            journal = XpJournal.open(getDataFolder().toPath().resolve("journal"),
+                config.journalSegmentSize(), config.journalSyncInterval());
+            int replayed = journal.replay(storage);
+            if (replayed > 0) {
+                getLogger().info("Replayed XP journal for " + replayed + " players");
+            }
+        }
     }
 
     private void initializeTreeRegistry() {
@@ -118,19 +168,17 @@ public final class Atom extends JavaPlugin {
     }
 
     private void initializeManagers() {
-        dataManager = new PlayerDataManager(storage);
-        multiTreeAggregator = new org.shotrush.atom.tree.MultiTreeAggregator(treeRegistry);
+        dataManager = new PlayerDataManager(storage,
+            new WriteBehindQueue(storage, config.writeBehindBatchSize(), config.writeBehindFlushInterval()),
+            config.offlineCacheSize(), config.offlineCacheExpiry(), journal);
+        multiTreeAggregator = new org.shotrush.atom.tree.MultiTreeAggregator(treeRegistry, config.weightRecomputeInterval() * 1000L);
         xpEngine = new XpEngine(treeRegistry, multiTreeAggregator, config);
         effectManager = new EffectManager(this, config, xpEngine, treeRegistry, dataManager);
         feedbackManager = new FeedbackManager(config);
         milestoneManager = new MilestoneManager(xpEngine, feedbackManager);
-        advancementGenerator = new AdvancementGenerator(this, xpEngine);
-        
-        for (SkillTree tree : treeRegistry.getAllTrees()) {
-            advancementGenerator.generateAdvancementsForTree(tree);
-        }
+        advancementGenerator = new AdvancementGenerator(this, xpEngine, treeRegistry, config.advancementSyncBudget());
         
-        advancementGenerator.generateMilestoneAdvancements(milestoneManager.getAllMilestones());
+        advancementGenerator.generateAdvancements(treeRegistry.getAllTrees(), milestoneManager.getAllMilestones());
         
         getLogger().info("Managers initialized");
         getLogger().info("Advancements loaded");
@@ -145,7 +193,7 @@ public final class Atom extends JavaPlugin {
 
     private void registerListeners() {
         getServer().getPluginManager().registerEvents(
-            new PlayerConnectionListener(dataManager),
+            new PlayerConnectionListener(dataManager, xpEngine, config.prefetchTimeout(), getLogger()),
             this
         );
 
@@ -185,9 +233,22 @@ public final class Atom extends JavaPlugin {
         long saveInterval = 20L * config.autoSaveInterval();
 
         getServer().getGlobalRegionScheduler().runAtFixedRate(this, task -> {
-            dataManager.saveAllPlayerData().thenRun(() ->
-                getLogger().info("Auto-saved data for " + dataManager.getCacheSize() + " players")
-            );
+            XpJournal.Checkpoint checkpoint = journal != null ? journal.beginCheckpoint() : null;
+            dataManager.checkpoint().whenComplete((ignored, error) -> {
+                if (error != null) {
+                    getLogger().warning("Auto-save failed, keeping XP journal: " + error.getMessage());
+                    return;
+                }
+                if (checkpoint != null) {
+                    checkpoint.complete();
+                }
+                getLogger().info("Auto-saved data for " + dataManager.getCacheSize() + " players");
+            });
+            
+            int evicted = treeRegistry.evictDynamicNodes(dataManager.getAllCachedPlayerData());
+            if (evicted > 0) {
+                getLogger().info("Evicted " + evicted + " unused dynamic skill nodes");
+            }
         }, saveInterval, saveInterval);
         
         getServer().getGlobalRegionScheduler().runAtFixedRate(this, task -> {
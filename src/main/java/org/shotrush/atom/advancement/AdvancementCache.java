@@ -0,0 +1,87 @@
+package org.shotrush.atom.advancement;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.logging.Logger;
+
+final class AdvancementCache {
+    
+    private static final int MAGIC = 0x41544144;
+    
+    private final Path directory;
+    private final Logger logger;
+    
+    AdvancementCache(Path directory, Logger logger) {
+        this.directory = Objects.requireNonNull(directory, "directory cannot be null");
+        this.logger = Objects.requireNonNull(logger, "logger cannot be null");
+    }
+    
+    Optional<Bundle> load(String name) {
+        Path file = file(name);
+        if (!Files.exists(file)) {
+            return Optional.empty();
+        }
+        
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC) {
+                return Optional.empty();
+            }
+            String fingerprint = in.readUTF();
+            int count = in.readInt();
+            List<Entry> entries = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                entries.add(new Entry(in.readUTF(), in.readUTF(), in.readUTF()));
+            }
+            return Optional.of(new Bundle(fingerprint, entries));
+        } catch (IOException e) {
+            logger.warning("Ignoring unreadable advancement cache file " + file.getFileName() + ": " + e.getMessage());
+            return Optional.empty();
+        }
+    }
+    
+    void store(String name, Bundle bundle) {
+        Path file = file(name);
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            Files.createDirectories(directory);
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeInt(MAGIC);
+                out.writeUTF(bundle.fingerprint());
+                out.writeInt(bundle.entries().size());
+                for (Entry entry : bundle.entries()) {
+                    out.writeUTF(entry.skillId());
+                    out.writeUTF(entry.path());
+                    out.writeUTF(entry.json());
+                }
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            logger.warning("Failed to write advancement cache file " + file.getFileName() + ": " + e.getMessage());
+        }
+    }
+    
+    private Path file(String name) {
+        return directory.resolve(name.toLowerCase(Locale.ROOT).replaceAll("[^a-z0-9_-]", "_") + ".bin");
+    }
+    
+    static String fingerprint(String canonical) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(canonical.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+    
+    record Bundle(String fingerprint, List<Entry> entries) {
+    }
+    
+    record Entry(String skillId, String path, String json) {
+    }
+}
@@ -1,69 +1,238 @@
 package org.shotrush.atom.advancement;
 
+import io.papermc.paper.threadedregions.scheduler.ScheduledTask;
 import org.bukkit.Bukkit;
 import org.bukkit.Material;
 import org.bukkit.NamespacedKey;
 import org.bukkit.advancement.Advancement;
 import org.bukkit.entity.Player;
 import org.bukkit.plugin.Plugin;
+import org.shotrush.atom.engine.TreeXpBuffer;
 import org.shotrush.atom.engine.XpEngine;
+import org.shotrush.atom.milestone.Milestone;
 import org.shotrush.atom.model.EffectiveXp;
 import org.shotrush.atom.model.PlayerSkillData;
+import org.shotrush.atom.model.SkillKeyspace;
 import org.shotrush.atom.model.SkillNode;
+import org.shotrush.atom.tree.CompiledTree;
+import org.shotrush.atom.tree.NodeIndex;
 import org.shotrush.atom.tree.SkillTree;
+import org.shotrush.atom.tree.SkillTreeRegistry;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
 public final class AdvancementGenerator {
     
+    // Bump whenever the generated JSON changes so cached bundles are rebuilt.
+    private static final int FORMAT_VERSION = 1;
+    private static final boolean FOLIA = isFolia();
+    
     private final Plugin plugin;
     private final XpEngine xpEngine;
+    private final SkillTreeRegistry treeRegistry;
+    private final AdvancementCache cache;
     private final Map<String, NamespacedKey> skillAdvancementKeys;
+    private final Map<CompiledTree, TreeHandles> treeHandles;
+    private final Map<UUID, SyncState> syncStates;
+    private final int syncBudget;
     
-    public AdvancementGenerator(Plugin plugin, XpEngine xpEngine) {
+    public AdvancementGenerator(Plugin plugin, XpEngine xpEngine, SkillTreeRegistry treeRegistry, int syncBudget) {
+        if (syncBudget <= 0) {
+            throw new IllegalArgumentException("Sync budget must be positive");
+        }
         this.plugin = plugin;
+        this.syncBudget = syncBudget;
         this.xpEngine = xpEngine;
+        this.treeRegistry = Objects.requireNonNull(treeRegistry, "treeRegistry cannot be null");
+        this.cache = new AdvancementCache(plugin.getDataFolder().toPath().resolve("advancement-cache"), plugin.getLogger());
         this.skillAdvancementKeys = new HashMap<>();
+        this.treeHandles = new ConcurrentHashMap<>();
+        this.syncStates = new ConcurrentHashMap<>();
+    }
+    
+    public void generateAdvancements(Collection<SkillTree> trees, List<Milestone> milestones) {
+        treeHandles.clear();
+        syncStates.clear();
+        
+        List<CompletableFuture<PreparedBundle>> futures = new ArrayList<>();
+        StringBuilder treeFingerprints = new StringBuilder();
+        for (SkillTree tree : trees) {
+            String fingerprint = treeFingerprint(tree);
+            treeFingerprints.append(fingerprint).append('\n');
+            futures.add(CompletableFuture.supplyAsync(
+                () -> prepareBundle("tree-" + tree.name(), fingerprint, () -> buildTreeEntries(tree))));
+        }
+        String milestoneFingerprint = milestoneFingerprint(milestones, treeFingerprints);
+        futures.add(CompletableFuture.supplyAsync(
+            () -> prepareBundle("milestones", milestoneFingerprint, () -> buildMilestoneEntries(milestones))));
+        
+        List<PreparedBundle> bundles = futures.stream().map(CompletableFuture::join).toList();
+        registerBundles(bundles);
+    }
+    
+    private String treeFingerprint(SkillTree tree) {
+        StringBuilder canonical = new StringBuilder().append(FORMAT_VERSION).append('\n').append(tree.name());
+        appendNode(canonical, tree.root());
+        return AdvancementCache.fingerprint(canonical.toString());
+    }
+    
+    private void appendNode(StringBuilder canonical, SkillNode node) {
+        canonical.append('\n').append(node.id()).append('\0').append(node.displayName()).append('\0').append(node.depth());
+        for (SkillNode child : node.children().values()) {
+            appendNode(canonical, child);
+        }
+        canonical.append('\n').append('\0');
     }
     
-    public void generateAdvancementsForTree(SkillTree tree) {
-        generateNodeAdvancement(tree.root(), null);
-        plugin.getLogger().info("Generated " + skillAdvancementKeys.size() + " advancements for tree: " + tree.name());
+    private String milestoneFingerprint(List<Milestone> milestones, CharSequence treeFingerprints) {
+        StringBuilder canonical = new StringBuilder().append(FORMAT_VERSION).append('\n').append(treeFingerprints);
+        for (Milestone milestone : milestones) {
+            canonical.append('\n').append(milestone.id())
+                .append('\0').append(milestone.skillId())
+                .append('\0').append(milestone.displayName())
+                .append('\0').append(milestone.description())
+                .append('\0').append(milestone.requiredLevel());
+        }
+        return AdvancementCache.fingerprint(canonical.toString());
     }
     
-    public void generateMilestoneAdvancements(java.util.List<org.shotrush.atom.milestone.Milestone> milestones) {
-        int count = 0;
-        for (org.shotrush.atom.milestone.Milestone milestone : milestones) {
-            generateMilestoneAdvancement(milestone);
-            count++;
+    private PreparedBundle prepareBundle(String name, String fingerprint, Supplier<List<AdvancementCache.Entry>> builder) {
+        Optional<AdvancementCache.Bundle> cached = cache.load(name);
+        if (cached.isPresent() && cached.get().fingerprint().equals(fingerprint)) {
+            return new PreparedBundle(cached.get(), false, List.of());
+        }
+        
+        AdvancementCache.Bundle bundle = new AdvancementCache.Bundle(fingerprint, builder.get());
+        cache.store(name, bundle);
+        
+        Set<String> paths = new HashSet<>();
+        for (AdvancementCache.Entry entry : bundle.entries()) {
+            paths.add(entry.path());
         }
-        plugin.getLogger().info("Generated " + count + " milestone advancements");
+        List<String> stale = cached.map(old -> old.entries().stream()
+                .map(AdvancementCache.Entry::path)
+                .filter(path -> !paths.contains(path))
+                .toList())
+            .orElse(List.of());
+        return new PreparedBundle(bundle, true, stale);
+    }
+    
+    private List<AdvancementCache.Entry> buildTreeEntries(SkillTree tree) {
+        List<AdvancementCache.Entry> entries = new ArrayList<>(tree.size());
+        buildNodeEntries(tree.root(), null, entries);
+        return entries;
     }
     
-    private void generateMilestoneAdvancement(org.shotrush.atom.milestone.Milestone milestone) {
-        String path = "milestones/" + milestone.id();
-        NamespacedKey key = new NamespacedKey(plugin, path);
+    private void buildNodeEntries(SkillNode node, String parentId, List<AdvancementCache.Entry> entries) {
+        String icon = getMaterialForNode(node).getKey().toString();
+        String title = formatTitle(node.id());
+        String description = generateDescription(node);
+        String frame = getFrameType(node);
+        String parent = parentId != null ? "atom:" + parentId.replace(".", "/") : null;
+        boolean isRoot = parentId == null;
+        
+        String json = buildAdvancementJson(icon, title, description, frame, parent, true, true, isRoot);
+        entries.add(new AdvancementCache.Entry(node.id(), node.id().replace(".", "/"), json));
         
-        String parentPath = milestone.skillId().replace(".", "/");
-        String icon = getMaterialForMilestone(milestone.skillId());
-        String frame = getFrameForMilestone(milestone);
+        for (SkillNode child : node.children().values()) {
+            buildNodeEntries(child, node.id(), entries);
+        }
+    }
+    
+    private List<AdvancementCache.Entry> buildMilestoneEntries(List<Milestone> milestones) {
+        List<AdvancementCache.Entry> entries = new ArrayList<>(milestones.size());
+        for (Milestone milestone : milestones) {
+            String parentPath = milestone.skillId().replace(".", "/");
+            String icon = getMaterialForMilestone(milestone.skillId());
+            String frame = getFrameForMilestone(milestone);
+            
+            String json = buildAdvancementJson(
+                icon,
+                "§6" + milestone.displayName(),
+                milestone.description() + " (" + (int)milestone.requiredLevel() + "% progress)",
+                frame,
+                "atom:" + parentPath,
+                true,
+                true
+            );
+            
+            String path = "milestones/" + milestone.id();
+            entries.add(new AdvancementCache.Entry(path, path, json));
+        }
+        return entries;
+    }
+    
+    @SuppressWarnings("deprecation")
+    private void registerBundles(List<PreparedBundle> bundles) {
+        int removed = 0;
+        for (PreparedBundle prepared : bundles) {
+            if (!prepared.rebuilt()) {
+                continue;
+            }
+            List<String> paths = new ArrayList<>(prepared.stalePaths());
+            for (AdvancementCache.Entry entry : prepared.bundle().entries()) {
+                paths.add(entry.path());
+            }
+            for (int i = paths.size() - 1; i >= 0; i--) {
+                NamespacedKey key = new NamespacedKey(plugin, paths.get(i));
+                if (Bukkit.getAdvancement(key) != null && Bukkit.getUnsafe().removeAdvancement(key)) {
+                    removed++;
+                }
+            }
+        }
+        if (removed > 0) {
+            reloadChangedAdvancements(removed);
+        }
         
-        String json = buildAdvancementJson(
-            icon,
-            "§6" + milestone.displayName(),
-            milestone.description() + " (" + (int)milestone.requiredLevel() + "% progress)",
-            frame,
-            "atom:" + parentPath,
-            true,
-            true
-        );
+        int loaded = 0;
+        int reused = 0;
+        int rebuilt = 0;
+        for (PreparedBundle prepared : bundles) {
+            for (AdvancementCache.Entry entry : prepared.bundle().entries()) {
+                NamespacedKey key = new NamespacedKey(plugin, entry.path());
+                if (Bukkit.getAdvancement(key) == null) {
+                    loadAdvancement(key, entry.json());
+                    loaded++;
+                } else {
+                    reused++;
+                }
+                skillAdvancementKeys.put(entry.skillId(), key);
+            }
+            if (prepared.rebuilt()) {
+                rebuilt++;
+            }
+        }
+        plugin.getLogger().info("Registered advancements: " + loaded + " loaded, " + reused + " already present, "
+            + rebuilt + "/" + bundles.size() + " bundles regenerated");
+    }
+    
+    private void reloadChangedAdvancements(int removed) {
+        if (FOLIA) {
+            plugin.getLogger().warning(removed + " changed advancements keep their previous definition until the next "
+                + "restart; Folia cannot reload server data");
+            return;
+        }
         
-        loadAdvancement(key, json);
-        skillAdvancementKeys.put("milestones/" + milestone.id(), key);
+        long start = System.nanoTime();
+        Bukkit.reloadData();
+        plugin.getLogger().info("Reloaded all server data (datapacks, recipes, loot tables) to replace " + removed
+            + " changed advancements in " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + "ms");
+    }
+    
+    private static boolean isFolia() {
+        try {
+            Class.forName("io.papermc.paper.threadedregions.RegionizedServer");
+            return true;
+        } catch (ClassNotFoundException e) {
+            return false;
+        }
     }
     
-    private String getFrameForMilestone(org.shotrush.atom.milestone.Milestone milestone) {
+    private String getFrameForMilestone(Milestone milestone) {
         if (milestone.requiredLevel() >= 75.0) {
             return "challenge";
         } else if (milestone.requiredLevel() >= 50.0) {
@@ -90,27 +259,6 @@ public final class AdvancementGenerator {
         return "minecraft:nether_star";
     }
     
-    private void generateNodeAdvancement(SkillNode node, String parentId) {
-        String path = node.id().replace(".", "/");
-        NamespacedKey key = new NamespacedKey(plugin, path);
-        
-        String icon = getMaterialForNode(node).getKey().toString();
-        String title = formatTitle(node.id());
-        String description = generateDescription(node);
-        String frame = getFrameType(node);
-        String parent = parentId != null ? "atom:" + parentId.replace(".", "/") : null;
-        boolean isRoot = parentId == null;
-        
-        String json = buildAdvancementJson(icon, title, description, frame, parent, true, true, isRoot);
-        
-        loadAdvancement(key, json);
-        skillAdvancementKeys.put(node.id(), key);
-        
-        for (SkillNode child : node.children().values()) {
-            generateNodeAdvancement(child, node.id());
-        }
-    }
-    
     @SuppressWarnings("deprecation")
     private void loadAdvancement(NamespacedKey key, String json) {
         try {
@@ -276,24 +424,173 @@ public final class AdvancementGenerator {
         }
     }
     
-    public void updatePlayerAdvancements(Player player, PlayerSkillData data, SkillTree tree) {
-        updateNodeAdvancements(player, data, tree.root());
+    public void requestSync(Player player, PlayerSkillData data, BitSet changedKeys) {
+        SyncState state = syncStates.computeIfAbsent(player.getUniqueId(), id -> new SyncState());
+        synchronized (state) {
+            state.data = data;
+            state.changedKeys.or(changedKeys);
+            if (state.scheduled) {
+                return;
+            }
+            state.scheduled = true;
+        }
+        schedule(player, state);
+    }
+    
+    public void forgetPlayer(UUID playerId) {
+        syncStates.remove(playerId);
     }
     
-    private void updateNodeAdvancements(Player player, PlayerSkillData data, SkillNode node) {
-        NamespacedKey key = skillAdvancementKeys.get(node.id());
-        if (key == null) {
-            System.out.println("[Advancement Debug] No key found for skill: " + node.id());
+    private void schedule(Player player, SyncState state) {
+        ScheduledTask task = player.getScheduler().run(plugin, scheduled -> flush(player, state),
+            () -> syncStates.remove(player.getUniqueId(), state));
+        if (task == null) {
+            syncStates.remove(player.getUniqueId(), state);
+        }
+    }
+    
+    private void flush(Player player, SyncState state) {
+        boolean more;
+        synchronized (state) {
+            if (syncStates.get(player.getUniqueId()) != state) {
+                return;
+            }
+            
+            NodeIndex index = treeRegistry.nodeIndex();
+            if (state.generation != index.generation()) {
+                state.completed.clear();
+                state.pending.clear();
+                state.generation = index.generation();
+            }
+            collectChanges(player, state, index);
+            state.changedKeys.clear();
+            
+            int applied = 0;
+            Iterator<PendingChange> iterator = state.pending.values().iterator();
+            while (iterator.hasNext() && applied < syncBudget) {
+                PendingChange change = iterator.next();
+                iterator.remove();
+                applyAdvancementProgress(player, change.advancement(), change.skillId(), change.effectiveXp());
+                change.completed().set(change.ordinal(), change.done());
+                applied++;
+            }
+            
+            more = !state.pending.isEmpty();
+            state.scheduled = more;
+        }
+        
+        if (more) {
+            schedule(player, state);
+        }
+    }
+    
+    private void collectChanges(Player player, SyncState state, NodeIndex index) {
+        for (CompiledTree tree : index.compiledTrees()) {
+            BitSet completed = state.completed.get(tree);
+            if (completed != null && state.changedKeys.isEmpty()) {
+                continue;
+            }
+            
+            TreeHandles handles = handles(index, tree);
+            
+            if (completed == null) {
+                completed = new BitSet(tree.size());
+                state.completed.put(tree, completed);
+                reconcileTree(player, state, tree, handles, xpEngine.evaluateTree(state.data, tree), completed);
+                continue;
+            }
+            
+            BitSet tops = new BitSet();
+            for (int key = state.changedKeys.nextSetBit(0); key >= 0; key = state.changedKeys.nextSetBit(key + 1)) {
+                int ordinal = tree.ordinal(SkillKeyspace.id(key));
+                if (ordinal >= 0) {
+                    int[] path = tree.path(ordinal);
+                    tops.set(path[Math.min(1, path.length - 1)]);
+                }
+            }
+            if (tops.isEmpty() && handles.sharedOrdinals.length == 0) {
+                continue;
+            }
+            
+            TreeXpBuffer buffer = xpEngine.evaluateTree(state.data, tree);
+            for (int top = tops.nextSetBit(0); top >= 0; top = tops.nextSetBit(tree.subtreeEnd(top))) {
+                for (int affected = top; affected < tree.subtreeEnd(top); affected++) {
+                    checkNode(state, tree, handles, buffer, completed, affected);
+                }
+            }
+            for (int ordinal : handles.sharedOrdinals) {
+                checkNode(state, tree, handles, buffer, completed, ordinal);
+            }
+        }
+    }
+    
+    private void reconcileTree(Player player, SyncState state, CompiledTree tree, TreeHandles handles,
+                               TreeXpBuffer buffer, BitSet completed) {
+        int ordinal = 0;
+        while (ordinal < tree.size()) {
+            Advancement advancement = handles.advancement(ordinal);
+            if (advancement == null) {
+                ordinal = tree.subtreeEnd(ordinal);
+                continue;
+            }
+            
+            completed.set(ordinal, player.getAdvancementProgress(advancement).isDone());
+            checkNode(state, tree, handles, buffer, completed, ordinal);
+            ordinal++;
+        }
+    }
+    
+    private void checkNode(SyncState state, CompiledTree tree, TreeHandles handles,
+                           TreeXpBuffer buffer, BitSet completed, int ordinal) {
+        EffectiveXp effectiveXp = effectiveXp(state.data, tree, handles, buffer, ordinal);
+        boolean done = effectiveXp.progressPercent() >= 1.0;
+        if (done == completed.get(ordinal)) {
+            if (!state.pending.isEmpty()) {
+                state.pending.remove(new NodeKey(tree, ordinal));
+            }
             return;
         }
         
-        Advancement advancement = Bukkit.getAdvancement(key);
+        Advancement advancement = handles.advancement(ordinal);
         if (advancement == null) {
-            System.out.println("[Advancement Debug] Advancement not registered for key: " + key + " (skill: " + node.id() + ")");
+            completed.set(ordinal, done);
             return;
         }
+        state.pending.put(new NodeKey(tree, ordinal),
+            new PendingChange(completed, ordinal, advancement, tree.id(ordinal), effectiveXp, done));
+    }
+    
+    private EffectiveXp effectiveXp(PlayerSkillData data, CompiledTree tree, TreeHandles handles,
+                                    TreeXpBuffer buffer, int ordinal) {
+        return handles.shared[ordinal]
+            ? xpEngine.getEffectiveXp(data, tree.id(ordinal))
+            : buffer.effectiveXp(ordinal);
+    }
+    
+    private TreeHandles handles(NodeIndex index, CompiledTree tree) {
+        TreeHandles handles = treeHandles.get(tree);
+        if (handles == null || handles.generation != index.generation()) {
+            handles = new TreeHandles(index, tree);
+            treeHandles.put(tree, handles);
+        }
+        return handles;
+    }
+    
+    private Advancement findAdvancement(String skillId) {
+        NamespacedKey key = skillAdvancementKeys.get(skillId);
+        if (key == null) {
+            System.out.println("[Advancement Debug] No key found for skill: " + skillId);
+            return null;
+        }
         
-        EffectiveXp effectiveXp = xpEngine.getEffectiveXp(data, node.id());
+        Advancement advancement = Bukkit.getAdvancement(key);
+        if (advancement == null) {
+            System.out.println("[Advancement Debug] Advancement not registered for key: " + key + " (skill: " + skillId + ")");
+        }
+        return advancement;
+    }
+    
+    private void applyAdvancementProgress(Player player, Advancement advancement, String skillId, EffectiveXp effectiveXp) {
         double progress = effectiveXp.progressPercent();
         
         var advancementProgress = player.getAdvancementProgress(advancement);
@@ -301,24 +598,79 @@ public final class AdvancementGenerator {
         
         if (progress >= 1.0) {
             if (!wasCompleted) {
-                System.out.println("[Advancement Grant] " + player.getName() + " completed '" + node.id() + 
+                System.out.println("[Advancement Grant] " + player.getName() + " completed '" + skillId + 
                     "' (" + effectiveXp.intrinsicXp() + "+" + effectiveXp.honoraryXp() + " XP, " + 
                     String.format("%.1f%%", progress * 100) + ")");
             }
             advancementProgress.awardCriteria("trigger");
         } else {
             if (wasCompleted) {
-                System.out.println("[Advancement Revoke] " + player.getName() + " lost '" + node.id() + 
+                System.out.println("[Advancement Revoke] " + player.getName() + " lost '" + skillId + 
                     "' (now " + String.format("%.1f%%", progress * 100) + ")");
             }
             advancementProgress.revokeCriteria("trigger");
         }
+    }
+    
+    private final class TreeHandles {
+        
+        private final long generation;
+        private final CompiledTree tree;
+        private final Advancement[] advancements;
+        private final boolean[] resolved;
+        private final boolean[] shared;
+        private final int[] sharedOrdinals;
+        
+        private TreeHandles(NodeIndex index, CompiledTree tree) {
+            this.generation = index.generation();
+            this.tree = tree;
+            this.advancements = new Advancement[tree.size()];
+            this.resolved = new boolean[tree.size()];
+            this.shared = new boolean[tree.size()];
+            
+            int sharedCount = 0;
+            for (int ordinal = 0; ordinal < tree.size(); ordinal++) {
+                shared[ordinal] = index.plan(tree.id(ordinal)) != null;
+                if (shared[ordinal]) {
+                    sharedCount++;
+                }
+            }
+            this.sharedOrdinals = new int[sharedCount];
+            for (int ordinal = 0, next = 0; ordinal < tree.size(); ordinal++) {
+                if (shared[ordinal]) {
+                    sharedOrdinals[next++] = ordinal;
+                }
+            }
+        }
         
-        for (SkillNode child : node.children().values()) {
-            updateNodeAdvancements(player, data, child);
+        private Advancement advancement(int ordinal) {
+            if (!resolved[ordinal]) {
+                advancements[ordinal] = findAdvancement(tree.id(ordinal));
+                resolved[ordinal] = true;
+            }
+            return advancements[ordinal];
         }
     }
     
+    private record PreparedBundle(AdvancementCache.Bundle bundle, boolean rebuilt, List<String> stalePaths) {
+    }
+    
+    private record NodeKey(CompiledTree tree, int ordinal) {
+    }
+    
+    private record PendingChange(BitSet completed, int ordinal, Advancement advancement, String skillId,
+                                 EffectiveXp effectiveXp, boolean done) {
+    }
+    
+    private static final class SyncState {
+        private final Map<CompiledTree, BitSet> completed = new IdentityHashMap<>();
+        private final Map<NodeKey, PendingChange> pending = new LinkedHashMap<>();
+        private final BitSet changedKeys = new BitSet();
+        private PlayerSkillData data;
+        private long generation = -1L;
+        private boolean scheduled;
+    }
+    
     public void clearPlayerAdvancements(Player player) {
         for (NamespacedKey key : skillAdvancementKeys.values()) {
             Advancement advancement = Bukkit.getAdvancement(key);
@@ -327,5 +679,6 @@ public final class AdvancementGenerator {
                 progress.revokeCriteria("trigger");
             }
         }
+        syncStates.remove(player.getUniqueId());
     }
 }
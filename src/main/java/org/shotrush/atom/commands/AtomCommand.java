@@ -10,8 +10,11 @@ import org.shotrush.atom.engine.XpEngine;
 import org.shotrush.atom.manager.PlayerDataManager;
 import org.shotrush.atom.model.EffectiveXp;
 import org.shotrush.atom.model.PlayerSkillData;
+import org.shotrush.atom.model.SkillKeyspace;
+import org.shotrush.atom.storage.StorageMetrics;
 import org.shotrush.atom.tree.SkillTreeRegistry;
 
+import java.util.BitSet;
 import java.util.Map;
 import java.util.Optional;
 
@@ -134,6 +137,7 @@ public final class AtomCommand extends BaseCommand {
         
         PlayerSkillData data = dataOpt.get();
         xpEngine.setXp(data, skillId, amount);
+        syncAdvancements(target, data, skillId);
         
         sender.sendMessage(Component.text("✓ Set ", NamedTextColor.GREEN)
             .append(Component.text(target.getName(), NamedTextColor.YELLOW))
@@ -177,6 +181,7 @@ public final class AtomCommand extends BaseCommand {
         
         PlayerSkillData data = dataOpt.get();
         xpEngine.awardXp(data, skillId, amount);
+        syncAdvancements(target, data, skillId);
         
         sender.sendMessage(Component.text("✓ Added ", NamedTextColor.GREEN)
             .append(Component.text(amount + " XP", NamedTextColor.AQUA))
@@ -186,6 +191,12 @@ public final class AtomCommand extends BaseCommand {
             .append(Component.text(skillId, NamedTextColor.GOLD)));
     }
     
+    private void syncAdvancements(Player target, PlayerSkillData data, String skillId) {
+        BitSet changedKeys = new BitSet();
+        changedKeys.set(SkillKeyspace.ordinal(skillId));
+        plugin.getAdvancementGenerator().requestSync(target, data, changedKeys);
+    }
+    
     @Subcommand("admin save")
     @CommandPermission("atom.admin.reload")
     @Description("Force save all player data")
@@ -197,6 +208,24 @@ public final class AtomCommand extends BaseCommand {
         });
     }
     
+    @Subcommand("admin storage")
+    @CommandPermission("atom.admin.reload")
+    @Description("Show storage queue metrics")
+    public void onStorage(Player sender) {
+        Optional<StorageMetrics> metricsOpt = plugin.getStorage().readMetrics();
+        if (metricsOpt.isEmpty()) {
+            sender.sendMessage(Component.text("Storage metrics are not available", NamedTextColor.RED));
+            return;
+        }
+        
+        StorageMetrics metrics = metricsOpt.get();
+        sender.sendMessage(Component.text("Storage reads: " + metrics.active() + " active, " + metrics.queued() + " queued, "
+            + metrics.completed() + " completed", NamedTextColor.YELLOW));
+        sender.sendMessage(Component.text(String.format("Queue wait: %.2f ms avg, %.2f ms max",
+            metrics.averageWaitMillis(), metrics.maxWaitMillis()), NamedTextColor.YELLOW));
+        sender.sendMessage(Component.text("Offline cache: " + dataManager.getOfflineCacheSize() + " players", NamedTextColor.YELLOW));
+    }
+    
     @Subcommand("debug")
     @CommandPermission("atom.admin.reload")
     @Description("View detailed XP breakdown")
@@ -5,6 +5,7 @@ import org.bukkit.configuration.file.FileConfiguration;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.logging.Logger;
 
 public final class AtomConfig {
     
@@ -19,7 +20,27 @@ public final class AtomConfig {
     private final boolean enableXpTransfer;
     private final double parentXpMultiplier;
     private final double parentXpDecay;
+    private final int weightRecomputeInterval;
+    private final int writeBehindBatchSize;
+    private final int writeBehindFlushInterval;
+    private final String sqliteSynchronous;
+    private final long sqliteMmapSize;
+    private final int sqliteCacheSize;
+    private final String sqliteTempStore;
+    private final int sqliteReadPoolSize;
+    private final String sqliteExecutor;
+    private final String storageFormat;
+    private final int storageShards;
+    private final int prefetchTimeout;
+    private final int offlineCacheSize;
+    private final int offlineCacheExpiry;
+    private final boolean journalEnabled;
+    private final int journalSegmentSize;
+    private final int journalSyncInterval;
+    private final int advancementSyncBudget;
     private final Map<Integer, Integer> depthXpRequirements;
+    private final SkillRules skillRules;
+    private final boolean debugXpFlow;
     
     private AtomConfig(Builder builder) {
         this.xpRates = Map.copyOf(builder.xpRates);
@@ -33,7 +54,27 @@ public final class AtomConfig {
         this.enableXpTransfer = builder.enableXpTransfer;
         this.parentXpMultiplier = builder.parentXpMultiplier;
         this.parentXpDecay = builder.parentXpDecay;
+        this.weightRecomputeInterval = builder.weightRecomputeInterval;
+        this.writeBehindBatchSize = builder.writeBehindBatchSize;
+        this.writeBehindFlushInterval = builder.writeBehindFlushInterval;
+        this.sqliteSynchronous = builder.sqliteSynchronous;
+        this.sqliteMmapSize = builder.sqliteMmapSize;
+        this.sqliteCacheSize = builder.sqliteCacheSize;
+        this.sqliteTempStore = builder.sqliteTempStore;
+        this.sqliteReadPoolSize = builder.sqliteReadPoolSize;
+        this.sqliteExecutor = builder.sqliteExecutor;
+        this.storageFormat = builder.storageFormat;
+        this.storageShards = builder.storageShards;
+        this.prefetchTimeout = builder.prefetchTimeout;
+        this.offlineCacheSize = builder.offlineCacheSize;
+        this.offlineCacheExpiry = builder.offlineCacheExpiry;
+        this.journalEnabled = builder.journalEnabled;
+        this.journalSegmentSize = builder.journalSegmentSize;
+        this.journalSyncInterval = builder.journalSyncInterval;
+        this.advancementSyncBudget = builder.advancementSyncBudget;
         this.depthXpRequirements = Map.copyOf(builder.depthXpRequirements);
+        this.skillRules = builder.skillRules;
+        this.debugXpFlow = builder.debugXpFlow;
     }
     
     public int getXpRate(String actionId) {
@@ -80,11 +121,91 @@ public final class AtomConfig {
         return parentXpDecay;
     }
     
+    public int weightRecomputeInterval() {
+        return weightRecomputeInterval;
+    }
+    
+    public int writeBehindBatchSize() {
+        return writeBehindBatchSize;
+    }
+    
+    public int writeBehindFlushInterval() {
+        return writeBehindFlushInterval;
+    }
+    
+    public String sqliteSynchronous() {
+        return sqliteSynchronous;
+    }
+    
+    public long sqliteMmapSize() {
+        return sqliteMmapSize;
+    }
+    
+    public int sqliteCacheSize() {
+        return sqliteCacheSize;
+    }
+    
+    public String sqliteTempStore() {
+        return sqliteTempStore;
+    }
+    
+    public int sqliteReadPoolSize() {
+        return sqliteReadPoolSize;
+    }
+    
+    public String sqliteExecutor() {
+        return sqliteExecutor;
+    }
+    
+    public String storageFormat() {
+        return storageFormat;
+    }
+    
+    public int storageShards() {
+        return storageShards;
+    }
+    
+    public int prefetchTimeout() {
+        return prefetchTimeout;
+    }
+    
+    public int offlineCacheSize() {
+        return offlineCacheSize;
+    }
+    
+    public int offlineCacheExpiry() {
+        return offlineCacheExpiry;
+    }
+    
+    public boolean journalEnabled() {
+        return journalEnabled;
+    }
+    
+    public int journalSegmentSize() {
+        return journalSegmentSize;
+    }
+    
+    public int journalSyncInterval() {
+        return journalSyncInterval;
+    }
+    
+    public int advancementSyncBudget() {
+        return advancementSyncBudget;
+    }
+    
     public int getDepthXpRequirement(int depth) {
         return depthXpRequirements.getOrDefault(depth, 10000);
     }
     
-    public static AtomConfig loadFrom(FileConfiguration config) {
+    public SkillRules skillRules() {
+        return skillRules;
+    }
+    
+    public boolean debugXpFlow() {
+        return debugXpFlow;
+    }
+    
+    public static AtomConfig loadFrom(FileConfiguration config, Logger logger) {
         Builder builder = new Builder();
         
         ConfigurationSection xpSection = config.getConfigurationSection("xp-rates");
@@ -93,6 +214,7 @@ public final class AtomConfig {
                 builder.xpRate(key, xpSection.getInt(key));
             }
         }
+        builder.skillRules(SkillRules.load(config, builder.xpRates, logger));
         
         ConfigurationSection penaltySection = config.getConfigurationSection("penalty-thresholds");
         if (penaltySection != null) {
@@ -116,11 +238,30 @@ public final class AtomConfig {
         builder.enableXpTransfer(config.getBoolean("features.xp-transfer", true));
         builder.parentXpMultiplier(config.getDouble("parent-xp.multiplier", 0.1));
         builder.parentXpDecay(config.getDouble("parent-xp.decay", 0.5));
+        builder.weightRecomputeInterval(config.getInt("tree-weights.recompute-interval", 30));
+        builder.writeBehindBatchSize(config.getInt("storage.write-behind.batch-size", 256));
+        builder.writeBehindFlushInterval(config.getInt("storage.write-behind.flush-interval", 1000));
+        builder.sqliteSynchronous(config.getString("storage.sqlite.synchronous", "NORMAL"));
+        builder.sqliteMmapSize(config.getLong("storage.sqlite.mmap-size", 268435456L));
+        builder.sqliteCacheSize(config.getInt("storage.sqlite.cache-size", -16000));
+        builder.sqliteTempStore(config.getString("storage.sqlite.temp-store", "MEMORY"));
+        builder.sqliteReadPoolSize(config.getInt("storage.sqlite.read-pool-size", 2));
+        builder.sqliteExecutor(config.getString("storage.sqlite.executor", "platform"));
+        builder.storageFormat(config.getString("storage.format", "rows"));
+        builder.storageShards(config.getInt("storage.shards", 1));
+        builder.prefetchTimeout(config.getInt("storage.prefetch-timeout", 3000));
+        builder.offlineCacheSize(config.getInt("storage.offline-cache.max-size", 500));
+        builder.offlineCacheExpiry(config.getInt("storage.offline-cache.expire-after-access", 600));
+        builder.journalEnabled(config.getBoolean("storage.journal.enabled", true));
+        builder.journalSegmentSize(config.getInt("storage.journal.segment-size", 16777216));
+        builder.journalSyncInterval(config.getInt("storage.journal.sync-interval", 1000));
+        builder.advancementSyncBudget(config.getInt("advancements.sync-budget", 32));
         
         builder.depthXpRequirement(1, config.getInt("depth-xp-requirements.depth-1", 1000));
         builder.depthXpRequirement(2, config.getInt("depth-xp-requirements.depth-2", 5000));
         builder.depthXpRequirement(3, config.getInt("depth-xp-requirements.depth-3", 10000));
         builder.depthXpRequirement(4, config.getInt("depth-xp-requirements.depth-4", 15000));
+        builder.debugXpFlow(config.getBoolean("debug.xp-flow", false));
         
         return builder.build();
     }
@@ -137,7 +278,27 @@ public final class AtomConfig {
         private boolean enableXpTransfer = true;
         private double parentXpMultiplier = 0.1;
         private double parentXpDecay = 0.5;
+        private int weightRecomputeInterval = 30;
+        private int writeBehindBatchSize = 256;
+        private int writeBehindFlushInterval = 1000;
+        private String sqliteSynchronous = "NORMAL";
+        private long sqliteMmapSize = 268435456L;
+        private int sqliteCacheSize = -16000;
+        private String sqliteTempStore = "MEMORY";
+        private int sqliteReadPoolSize = 2;
+        private String sqliteExecutor = "platform";
+        private String storageFormat = "rows";
+        private int storageShards = 1;
+        private int prefetchTimeout = 3000;
+        private int offlineCacheSize = 500;
+        private int offlineCacheExpiry = 600;
+        private boolean journalEnabled = true;
+        private int journalSegmentSize = 16_777_216;
+        private int journalSyncInterval = 1000;
+        private int advancementSyncBudget = 32;
         private final Map<Integer, Integer> depthXpRequirements = new HashMap<>();
+        private SkillRules skillRules = SkillRules.empty();
+        private boolean debugXpFlow = false;
         
         public Builder xpRate(String actionId, int rate) {
             this.xpRates.put(actionId, rate);
@@ -194,11 +355,111 @@ public final class AtomConfig {
             return this;
         }
         
+        public Builder weightRecomputeInterval(int seconds) {
+            this.weightRecomputeInterval = seconds;
+            return this;
+        }
+        
+        public Builder writeBehindBatchSize(int players) {
+            this.writeBehindBatchSize = players;
+            return this;
+        }
+        
+        public Builder writeBehindFlushInterval(int millis) {
+            this.writeBehindFlushInterval = millis;
+            return this;
+        }
+        
+        public Builder sqliteSynchronous(String level) {
+            this.sqliteSynchronous = level;
+            return this;
+        }
+        
+        public Builder sqliteMmapSize(long bytes) {
+            this.sqliteMmapSize = bytes;
+            return this;
+        }
+        
+        public Builder sqliteCacheSize(int pages) {
+            this.sqliteCacheSize = pages;
+            return this;
+        }
+        
+        public Builder sqliteTempStore(String mode) {
+            this.sqliteTempStore = mode;
+            return this;
+        }
+        
+        public Builder sqliteReadPoolSize(int connections) {
+            this.sqliteReadPoolSize = connections;
+            return this;
+        }
+        
+        public Builder sqliteExecutor(String mode) {
+            this.sqliteExecutor = mode;
+            return this;
+        }
+        
+        public Builder storageFormat(String format) {
+            this.storageFormat = format;
+            return this;
+        }
+        
+        public Builder storageShards(int shards) {
+            this.storageShards = shards;
+            return this;
+        }
+        
+        public Builder prefetchTimeout(int millis) {
+            this.prefetchTimeout = millis;
+            return this;
+        }
+        
+        public Builder offlineCacheSize(int players) {
+            this.offlineCacheSize = players;
+            return this;
+        }
+        
+        public Builder offlineCacheExpiry(int seconds) {
+            this.offlineCacheExpiry = seconds;
+            return this;
+        }
+        
+        public Builder journalEnabled(boolean enabled) {
+            this.journalEnabled = enabled;
+            return this;
+        }
+        
+        public Builder journalSegmentSize(int bytes) {
+            this.journalSegmentSize = bytes;
+            return this;
+        }
+        
+        public Builder journalSyncInterval(int millis) {
+            this.journalSyncInterval = millis;
+            return this;
+        }
+        
+        public Builder advancementSyncBudget(int changes) {
+            this.advancementSyncBudget = changes;
+            return this;
+        }
+        
+        public Builder skillRules(SkillRules rules) {
+            this.skillRules = rules;
+            return this;
+        }
+        
         public Builder depthXpRequirement(int depth, int xp) {
             this.depthXpRequirements.put(depth, xp);
             return this;
         }
         
+        public Builder debugXpFlow(boolean enabled) {
+            this.debugXpFlow = enabled;
+            return this;
+        }
+        
         public AtomConfig build() {
             return new AtomConfig(this);
         }
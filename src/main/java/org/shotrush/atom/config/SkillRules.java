@@ -0,0 +1,165 @@
+package org.shotrush.atom.config;
+
+import org.bukkit.Material;
+import org.bukkit.configuration.file.FileConfiguration;
+import org.bukkit.entity.EntityType;
+import org.shotrush.atom.model.SkillKeyspace;
+
+import java.util.BitSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.logging.Logger;
+
+public final class SkillRules {
+    
+    private final Rule[][] blockRules;
+    private final Rule[][] entityRules;
+    
+    private SkillRules(Rule[][] blockRules, Rule[][] entityRules) {
+        this.blockRules = blockRules;
+        this.entityRules = entityRules;
+    }
+    
+    public Rule block(BlockEvent event, Material type) {
+        return blockRules[event.ordinal()][type.ordinal()];
+    }
+    
+    public Rule entity(EntityEvent event, EntityType type) {
+        return entityRules[event.ordinal()][type.ordinal()];
+    }
+    
+    public BitSet materials(BlockEvent... events) {
+        BitSet relevant = new BitSet(Material.values().length);
+        for (BlockEvent event : events) {
+            mark(relevant, blockRules[event.ordinal()]);
+        }
+        return relevant;
+    }
+    
+    public BitSet entities(EntityEvent... events) {
+        BitSet relevant = new BitSet(EntityType.values().length);
+        for (EntityEvent event : events) {
+            mark(relevant, entityRules[event.ordinal()]);
+        }
+        return relevant;
+    }
+    
+    private static void mark(BitSet relevant, Rule[] rules) {
+        for (int i = 0; i < rules.length; i++) {
+            if (rules[i] != null) {
+                relevant.set(i);
+            }
+        }
+    }
+    
+    public static SkillRules empty() {
+        return new SkillRules(
+            new Rule[BlockEvent.values().length][Material.values().length],
+            new Rule[EntityEvent.values().length][EntityType.values().length]
+        );
+    }
+    
+    public static SkillRules load(FileConfiguration config, Map<String, Integer> xpRates, Logger logger) {
+        SkillRules rules = empty();
+        
+        for (BlockEvent event : BlockEvent.values()) {
+            for (Map<?, ?> entry : config.getMapList("skill-rules." + event.key())) {
+                Rule rule = parseRule(event.key(), entry, xpRates, logger);
+                if (rule == null) {
+                    continue;
+                }
+                for (String name : names(entry.get("materials"))) {
+                    Material material = Material.matchMaterial(name);
+                    if (material == null) {
+                        logger.warning("Unknown material '" + name + "' in skill-rules." + event.key());
+                        continue;
+                    }
+                    rules.blockRules[event.ordinal()][material.ordinal()] = rule;
+                }
+            }
+        }
+        
+        for (EntityEvent event : EntityEvent.values()) {
+            for (Map<?, ?> entry : config.getMapList("skill-rules." + event.key())) {
+                Rule rule = parseRule(event.key(), entry, xpRates, logger);
+                if (rule == null) {
+                    continue;
+                }
+                for (String name : names(entry.get("entities"))) {
+                    try {
+                        EntityType type = EntityType.valueOf(name.toUpperCase(Locale.ROOT));
+                        rules.entityRules[event.ordinal()][type.ordinal()] = rule;
+                    } catch (IllegalArgumentException e) {
+                        logger.warning("Unknown entity type '" + name + "' in skill-rules." + event.key());
+                    }
+                }
+            }
+        }
+        
+        return rules;
+    }
+    
+    private static Rule parseRule(String section, Map<?, ?> entry, Map<String, Integer> xpRates, Logger logger) {
+        if (!(entry.get("skill") instanceof String skillId)) {
+            logger.warning("Skipping rule without a skill in skill-rules." + section);
+            return null;
+        }
+        
+        int xp;
+        if (entry.get("xp") instanceof Number amount) {
+            xp = amount.intValue();
+        } else if (entry.get("rate") instanceof String rate) {
+            Integer configured = xpRates.get(rate);
+            if (configured == null) {
+                logger.warning("Skipping rule for " + skillId + " in skill-rules." + section
+                    + ": rate '" + rate + "' is not defined in xp-rates");
+                return null;
+            }
+            xp = configured;
+        } else {
+            logger.warning("Skipping rule for " + skillId + " in skill-rules." + section + ": it needs an xp or rate");
+            return null;
+        }
+        if (xp <= 0) {
+            logger.warning("Skipping rule for " + skillId + " in skill-rules." + section
+                + ": xp must be positive, got " + xp);
+            return null;
+        }
+        
+        return new Rule(SkillKeyspace.ordinal(skillId), xp);
+    }
+    
+    private static List<String> names(Object value) {
+        if (value instanceof List<?> list) {
+            return list.stream().map(String::valueOf).toList();
+        }
+        return value != null ? List.of(String.valueOf(value)) : List.of();
+    }
+    
+    public record Rule(int skillKey, int xp) {
+    }
+    
+    public enum BlockEvent {
+        BREAK,
+        HARVEST,
+        PLACE,
+        PLANT,
+        CRAFT,
+        INTERACT,
+        TILL;
+        
+        private String key() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+    
+    public enum EntityEvent {
+        KILL,
+        BREED;
+        
+        private String key() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+}
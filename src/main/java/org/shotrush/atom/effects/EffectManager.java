@@ -45,7 +45,7 @@ public final class EffectManager {
     
     public void updatePlayerEffects(Player player, PlayerSkillData data) {
         
-        Map<String, SkillNode> allNodes = buildNodeIndex();
+        Map<String, SkillNode> allNodes = treeRegistry.nodeIndex().nodes();
         
         
         Map<String, SpecializationMetrics> metrics = DepthProgression.calculateSpecialization(data, allNodes);
@@ -63,19 +63,6 @@ public final class EffectManager {
     }
     
     
-    private Map<String, SkillNode> buildNodeIndex() {
-        Map<String, SkillNode> allNodes = new ConcurrentHashMap<>();
-        
-        treeRegistry.getAllTrees().forEach(tree -> {
-            tree.getAllSkillIds().forEach(skillId -> {
-                tree.getNode(skillId).ifPresent(node -> allNodes.put(skillId, node));
-            });
-        });
-        
-        return allNodes;
-    }
-    
-    
     public double getFarmingDropRateMultiplier(Player player, PlayerSkillData data) {
         SpecializationCache cache = specializationCache.get(player.getUniqueId());
         if (cache == null) return 1.0;
@@ -0,0 +1,87 @@
+package org.shotrush.atom.engine;
+
+import org.shotrush.atom.model.EffectiveXp;
+import org.shotrush.atom.model.PlayerSkillData;
+
+import java.util.Arrays;
+
+final class EffectiveXpMemo {
+    
+    private final PlayerSkillData owner;
+    private final long generation;
+    private volatile EffectiveXp[] values;
+    private volatile long syncedVersion;
+    
+    EffectiveXpMemo(PlayerSkillData owner, long generation, int capacity) {
+        this.owner = owner;
+        this.generation = generation;
+        this.values = new EffectiveXp[Math.max(capacity, 16)];
+        this.syncedVersion = owner.version();
+    }
+    
+    PlayerSkillData owner() {
+        return owner;
+    }
+    
+    long generation() {
+        return generation;
+    }
+    
+    long syncedVersion() {
+        return syncedVersion;
+    }
+    
+    EffectiveXp get(int slot) {
+        if (syncedVersion != owner.version()) {
+            return null;
+        }
+        
+        EffectiveXp[] current = values;
+        return slot < current.length ? current[slot] : null;
+    }
+    
+    // The methods below must be called while holding the memo's monitor.
+    
+    void sync(long version) {
+        if (syncedVersion != version) {
+            reset(version);
+        }
+    }
+    
+    void reset(long version) {
+        values = new EffectiveXp[values.length];
+        syncedVersion = version;
+    }
+    
+    void markSynced(long version) {
+        syncedVersion = version;
+    }
+    
+    EffectiveXp value(int slot) {
+        EffectiveXp[] current = values;
+        return slot < current.length ? current[slot] : null;
+    }
+    
+    void store(int slot, EffectiveXp value) {
+        EffectiveXp[] current = values;
+        if (slot >= current.length) {
+            current = Arrays.copyOf(current, Math.max(slot + 1, current.length * 2));
+            values = current;
+        }
+        current[slot] = value;
+    }
+    
+    synchronized int size() {
+        if (syncedVersion != owner.version()) {
+            return 0;
+        }
+        
+        int size = 0;
+        for (EffectiveXp value : values) {
+            if (value != null) {
+                size++;
+            }
+        }
+        return size;
+    }
+}
@@ -0,0 +1,54 @@
+package org.shotrush.atom.engine;
+
+import org.shotrush.atom.model.SkillKeyspace;
+
+import java.util.Arrays;
+
+final class PendingXp {
+    
+    private long[] amounts;
+    private int[] touched;
+    private int touchedCount;
+    
+    PendingXp() {
+        this.amounts = new long[Math.max(SkillKeyspace.size(), 16)];
+        this.touched = new int[8];
+    }
+    
+    synchronized boolean add(int key, long amount) {
+        boolean first = touchedCount == 0;
+        if (key >= amounts.length) {
+            amounts = Arrays.copyOf(amounts, Math.max(key + 1, amounts.length * 2));
+        }
+        if (amounts[key] == 0) {
+            if (touchedCount == touched.length) {
+                touched = Arrays.copyOf(touched, touched.length * 2);
+            }
+            touched[touchedCount++] = key;
+        }
+        amounts[key] += amount;
+        return first;
+    }
+    
+    synchronized boolean isEmpty() {
+        return touchedCount == 0;
+    }
+    
+    synchronized Batch drain() {
+        int[] keys = Arrays.copyOf(touched, touchedCount);
+        long[] values = new long[touchedCount];
+        for (int i = 0; i < touchedCount; i++) {
+            values[i] = amounts[keys[i]];
+            amounts[keys[i]] = 0;
+        }
+        touchedCount = 0;
+        return new Batch(keys, values);
+    }
+    
+    record Batch(int[] keys, long[] amounts) {
+        
+        int size() {
+            return keys.length;
+        }
+    }
+}
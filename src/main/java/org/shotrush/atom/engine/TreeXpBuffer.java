@@ -0,0 +1,66 @@
+package org.shotrush.atom.engine;
+
+import org.shotrush.atom.model.EffectiveXp;
+import org.shotrush.atom.tree.CompiledTree;
+
+public final class TreeXpBuffer {
+    
+    private CompiledTree tree;
+    private long[] intrinsicXp;
+    private long[] honoraryXp;
+    private double[] progress;
+    
+    public TreeXpBuffer() {
+        this(64);
+    }
+    
+    public TreeXpBuffer(int capacity) {
+        this.intrinsicXp = new long[capacity];
+        this.honoraryXp = new long[capacity];
+        this.progress = new double[capacity];
+    }
+    
+    void reset(CompiledTree tree) {
+        this.tree = tree;
+        int size = tree.size();
+        if (intrinsicXp.length < size) {
+            intrinsicXp = new long[size];
+            honoraryXp = new long[size];
+            progress = new double[size];
+        }
+    }
+    
+    void set(int ordinal, long intrinsic, long honorary, double progressPercent) {
+        intrinsicXp[ordinal] = intrinsic;
+        honoraryXp[ordinal] = honorary;
+        progress[ordinal] = progressPercent;
+    }
+    
+    public CompiledTree tree() {
+        return tree;
+    }
+    
+    public int size() {
+        return tree != null ? tree.size() : 0;
+    }
+    
+    public long intrinsicXp(int ordinal) {
+        return intrinsicXp[ordinal];
+    }
+    
+    public long honoraryXp(int ordinal) {
+        return honoraryXp[ordinal];
+    }
+    
+    public long totalXp(int ordinal) {
+        return intrinsicXp[ordinal] + honoraryXp[ordinal];
+    }
+    
+    public double progress(int ordinal) {
+        return progress[ordinal];
+    }
+    
+    public EffectiveXp effectiveXp(int ordinal) {
+        return EffectiveXp.of(intrinsicXp[ordinal], honoraryXp[ordinal], tree.maxXp(ordinal));
+    }
+}
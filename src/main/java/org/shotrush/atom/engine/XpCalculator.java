@@ -5,9 +5,16 @@ import com.github.benmanes.caffeine.cache.Caffeine;
 import org.shotrush.atom.model.EffectiveXp;
 import org.shotrush.atom.model.PlayerSkillData;
 import org.shotrush.atom.model.SkillNode;
+import org.shotrush.atom.tree.AggregationPlan;
+import org.shotrush.atom.tree.CompiledTree;
+import org.shotrush.atom.tree.NodeIndex;
+import org.shotrush.atom.tree.NodeRef;
+import org.shotrush.atom.tree.SkillTreeRegistry;
 
 import java.time.Duration;
+import java.util.BitSet;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Map;
 import java.util.Objects;
 import java.util.UUID;
@@ -15,13 +22,16 @@ import java.util.UUID;
 public final class XpCalculator {
     
     private static final double HONORARY_XP_MULTIPLIER = 0.5;
+    private static final int MAX_MEMOS = 2_048;
     
-    private final Cache<CacheKey, EffectiveXp> effectiveXpCache;
+    private final SkillTreeRegistry treeRegistry;
+    private final Cache<UUID, EffectiveXpMemo> memos;
     
-    public XpCalculator() {
-        this.effectiveXpCache = Caffeine.newBuilder()
-            .maximumSize(10_000)
-            .expireAfterWrite(Duration.ofMinutes(5))
+    public XpCalculator(SkillTreeRegistry treeRegistry) {
+        this.treeRegistry = Objects.requireNonNull(treeRegistry, "treeRegistry cannot be null");
+        this.memos = Caffeine.newBuilder()
+            .maximumSize(MAX_MEMOS)
+            .expireAfterAccess(Duration.ofMinutes(5))
             .build();
     }
     
@@ -29,18 +39,189 @@ public final class XpCalculator {
         Objects.requireNonNull(playerData, "playerData cannot be null");
         Objects.requireNonNull(node, "node cannot be null");
         
-        CacheKey key = new CacheKey(playerData.playerId(), node.id(), playerData.lastModified());
+        NodeRef ref = treeRegistry.resolve(node);
+        if (ref == null) {
+            return computeEffectiveXp(playerData, node);
+        }
+        return calculateEffectiveXp(playerData, ref);
+    }
+    
+    public EffectiveXp calculateEffectiveXp(PlayerSkillData playerData, NodeRef ref) {
+        Objects.requireNonNull(playerData, "playerData cannot be null");
+        Objects.requireNonNull(ref, "ref cannot be null");
+        
+        EffectiveXpMemo memo = memoFor(playerData);
+        if (ref.tree().isRetired()) {
+            return computeUncached(playerData, ref.tree(), ref.ordinal());
+        }
+        
+        EffectiveXp cached = memo.get(ref.slot());
+        if (cached != null) {
+            return cached;
+        }
+        
+        synchronized (memo) {
+            memo.sync(playerData.version());
+            return fill(memo, playerData, ref.tree(), ref.ordinal());
+        }
+    }
+    
+    public void refreshPath(PlayerSkillData playerData, NodeRef ref, long previousVersion, int writes) {
+        Objects.requireNonNull(playerData, "playerData cannot be null");
+        Objects.requireNonNull(ref, "ref cannot be null");
+        
+        NodeIndex index = treeRegistry.nodeIndex();
+        EffectiveXpMemo memo = memos.getIfPresent(playerData.playerId());
+        if (memo == null || memo.owner() != playerData
+                || memo.generation() != index.generation() || ref.tree().isRetired()) {
+            return;
+        }
+        
+        CompiledTree tree = ref.tree();
+        int[] path = tree.path(ref.ordinal());
+        
+        synchronized (memo) {
+            long version = playerData.version();
+            if (memo.syncedVersion() != previousVersion || version != previousVersion + writes) {
+                memo.reset(version);
+                return;
+            }
+            
+            BitSet dirty = new BitSet(tree.size());
+            Map<CompiledTree, BitSet> sharedDirty = null;
+            for (int ordinal : path) {
+                dirty.set(ordinal);
+                AggregationPlan plan = index.plan(tree.id(ordinal));
+                if (plan == null) {
+                    continue;
+                }
+                if (sharedDirty == null) {
+                    sharedDirty = new IdentityHashMap<>();
+                }
+                for (int entry = 0; entry < plan.size(); entry++) {
+                    NodeRef shared = plan.ref(entry);
+                    if (shared.tree() != tree) {
+                        sharedDirty.computeIfAbsent(shared.tree(), other -> new BitSet(other.size())).set(shared.ordinal());
+                    }
+                }
+            }
+            
+            refreshTree(memo, playerData, tree, dirty);
+            if (sharedDirty != null) {
+                for (Map.Entry<CompiledTree, BitSet> entry : sharedDirty.entrySet()) {
+                    refreshTree(memo, playerData, entry.getKey(), entry.getValue());
+                }
+            }
+            
+            memo.markSynced(version);
+        }
+    }
+    
+    private void refreshTree(EffectiveXpMemo memo, PlayerSkillData playerData, CompiledTree tree, BitSet dirty) {
+        int start = dirty.nextSetBit(0);
+        while (start >= 0) {
+            int end = tree.subtreeEnd(start);
+            int ordinal = start;
+            while (ordinal < end) {
+                boolean changed = dirty.get(ordinal);
+                int subtreeEnd = tree.subtreeEnd(ordinal);
+                
+                int slot = tree.slot(ordinal);
+                EffectiveXp previous = memo.value(slot);
+                if (previous == null) {
+                    ordinal = subtreeEnd;
+                    continue;
+                }
+                
+                int parent = tree.parent(ordinal);
+                EffectiveXp updated = computeEffectiveXp(playerData, tree, ordinal,
+                    parent >= 0 ? memo.value(tree.slot(parent)) : null);
+                memo.store(slot, updated);
+                
+                int nextDirty = dirty.nextSetBit(ordinal + 1);
+                boolean dirtyBelow = nextDirty >= 0 && nextDirty < subtreeEnd;
+                if (!changed && !dirtyBelow && updated.progressPercent() == previous.progressPercent()) {
+                    ordinal = subtreeEnd;
+                } else {
+                    ordinal++;
+                }
+            }
+            start = dirty.nextSetBit(end);
+        }
+    }
+    
+    public TreeXpBuffer evaluateTree(PlayerSkillData playerData, CompiledTree tree, TreeXpBuffer buffer) {
+        Objects.requireNonNull(playerData, "playerData cannot be null");
+        Objects.requireNonNull(tree, "tree cannot be null");
+        Objects.requireNonNull(buffer, "buffer cannot be null");
         
-        EffectiveXp cached = effectiveXpCache.getIfPresent(key);
+        buffer.reset(tree);
+        for (int ordinal = 0; ordinal < tree.size(); ordinal++) {
+            long intrinsicXp = playerData.getIntrinsicXp(tree.key(ordinal));
+            int maxXp = tree.maxXp(ordinal);
+            int parent = tree.parent(ordinal);
+            
+            long honoraryXp = 0;
+            if (parent >= 0) {
+                long remainingCapacity = Math.max(0, maxXp - intrinsicXp);
+                honoraryXp = (long) (remainingCapacity * buffer.progress(parent) * HONORARY_XP_MULTIPLIER);
+            }
+            
+            buffer.set(ordinal, intrinsicXp, honoraryXp, EffectiveXp.progressOf(intrinsicXp + honoraryXp, maxXp));
+        }
+        return buffer;
+    }
+    
+    private EffectiveXpMemo memoFor(PlayerSkillData playerData) {
+        NodeIndex index = treeRegistry.nodeIndex();
+        long generation = index.generation();
+        EffectiveXpMemo memo = memos.getIfPresent(playerData.playerId());
+        if (memo != null && memo.owner() == playerData && memo.generation() == generation) {
+            return memo;
+        }
+        return memos.asMap().compute(playerData.playerId(), (playerId, existing) ->
+            existing != null && existing.owner() == playerData && existing.generation() == generation
+                ? existing
+                : new EffectiveXpMemo(playerData, generation, index.slotCount()));
+    }
+    
+    private EffectiveXp computeUncached(PlayerSkillData playerData, CompiledTree tree, int ordinal) {
+        EffectiveXp effectiveXp = null;
+        for (int node : tree.path(ordinal)) {
+            effectiveXp = computeEffectiveXp(playerData, tree, node, effectiveXp);
+        }
+        return effectiveXp;
+    }
+    
+    private EffectiveXp fill(EffectiveXpMemo memo, PlayerSkillData playerData, CompiledTree tree, int ordinal) {
+        int slot = tree.slot(ordinal);
+        EffectiveXp cached = memo.value(slot);
         if (cached != null) {
             return cached;
         }
         
-        EffectiveXp calculated = computeEffectiveXp(playerData, node);
-        effectiveXpCache.put(key, calculated);
+        int parent = tree.parent(ordinal);
+        EffectiveXp parentEffectiveXp = parent >= 0 ? fill(memo, playerData, tree, parent) : null;
+        EffectiveXp calculated = computeEffectiveXp(playerData, tree, ordinal, parentEffectiveXp);
+        memo.store(slot, calculated);
         return calculated;
     }
     
+    private EffectiveXp computeEffectiveXp(PlayerSkillData playerData, CompiledTree tree, int ordinal,
+                                           EffectiveXp parentEffectiveXp) {
+        long intrinsicXp = playerData.getIntrinsicXp(tree.key(ordinal));
+        int maxXp = tree.maxXp(ordinal);
+        
+        if (parentEffectiveXp == null) {
+            return EffectiveXp.of(intrinsicXp, 0, maxXp);
+        }
+        
+        long remainingCapacity = Math.max(0, maxXp - intrinsicXp);
+        long honoraryXp = (long) (remainingCapacity * parentEffectiveXp.progressPercent() * HONORARY_XP_MULTIPLIER);
+        
+        return EffectiveXp.of(intrinsicXp, honoraryXp, maxXp);
+    }
+    
     private EffectiveXp computeEffectiveXp(PlayerSkillData playerData, SkillNode node) {
         long intrinsicXp = playerData.getIntrinsicXp(node.id());
         
@@ -58,7 +239,7 @@ public final class XpCalculator {
             return 0;
         }
         
-        SkillNode parent = node.parent().orElse(null);
+        SkillNode parent = resolveParent(node);
         if (parent == null) {
             return 0;
         }
@@ -74,6 +255,17 @@ public final class XpCalculator {
         return honoraryXp;
     }
     
+    private SkillNode resolveParent(SkillNode node) {
+        NodeRef ref = treeRegistry.resolve(node);
+        if (ref == null) {
+            return node.parent().orElse(null);
+        }
+        
+        CompiledTree tree = ref.tree();
+        int parent = tree.parent(ref.ordinal());
+        return parent >= 0 ? tree.node(parent) : null;
+    }
+    
     public long calculateParentXp(PlayerSkillData playerData, SkillNode parentNode) {
         Objects.requireNonNull(playerData, "playerData cannot be null");
         Objects.requireNonNull(parentNode, "parentNode cannot be null");
@@ -104,21 +296,31 @@ public final class XpCalculator {
     }
     
     public void invalidateCache(UUID playerId) {
-        effectiveXpCache.asMap().keySet().removeIf(key -> key.playerId.equals(playerId));
+        EffectiveXpMemo memo = memos.getIfPresent(playerId);
+        if (memo != null) {
+            synchronized (memo) {
+                memo.reset(memo.owner().version());
+            }
+        }
     }
     
     public void invalidateCache(UUID playerId, String skillId) {
-        effectiveXpCache.asMap().keySet().removeIf(key -> 
-            key.playerId.equals(playerId) && key.skillId.equals(skillId));
+        invalidateCache(playerId);
+    }
+    
+    public void evict(UUID playerId) {
+        memos.invalidate(playerId);
     }
     
     public void clearCache() {
-        effectiveXpCache.invalidateAll();
+        memos.invalidateAll();
     }
     
     public long cacheSize() {
-        return effectiveXpCache.estimatedSize();
+        long size = 0;
+        for (EffectiveXpMemo memo : memos.asMap().values()) {
+            size += memo.size();
+        }
+        return size;
     }
-    
-    private record CacheKey(UUID playerId, String skillId, long timestamp) {}
 }
@@ -2,25 +2,36 @@ package org.shotrush.atom.engine;
 
 import org.shotrush.atom.model.EffectiveXp;
 import org.shotrush.atom.model.PlayerSkillData;
+import org.shotrush.atom.model.SkillKeyspace;
 import org.shotrush.atom.model.SkillNode;
+import org.shotrush.atom.tree.AggregationPlan;
+import org.shotrush.atom.tree.CompiledTree;
+import org.shotrush.atom.tree.NodeIndex;
+import org.shotrush.atom.tree.NodeRef;
 import org.shotrush.atom.tree.SkillTree;
 import org.shotrush.atom.tree.SkillTreeRegistry;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 public final class XpEngine {
     
+    private static final ThreadLocal<TreeXpBuffer> TREE_BUFFER = ThreadLocal.withInitial(TreeXpBuffer::new);
+    private static final ThreadLocal<EffectiveXp[]> AGGREGATION_BUFFER = ThreadLocal.withInitial(() -> new EffectiveXp[8]);
+    
     private final SkillTreeRegistry treeRegistry;
     private final XpCalculator calculator;
     private final org.shotrush.atom.tree.MultiTreeAggregator aggregator;
     private final org.shotrush.atom.config.AtomConfig config;
+    private final Map<UUID, PendingXp> pendingXp;
     
     public XpEngine(SkillTreeRegistry treeRegistry, org.shotrush.atom.tree.MultiTreeAggregator aggregator, 
                     org.shotrush.atom.config.AtomConfig config) {
         this.treeRegistry = Objects.requireNonNull(treeRegistry, "treeRegistry cannot be null");
         this.aggregator = aggregator;
-        this.calculator = new XpCalculator();
+        this.calculator = new XpCalculator(treeRegistry);
         this.config = Objects.requireNonNull(config, "config cannot be null");
+        this.pendingXp = new ConcurrentHashMap<>();
     }
     
     public void awardXp(PlayerSkillData playerData, String skillId, long amount) {
@@ -31,22 +42,154 @@ public final class XpEngine {
             throw new IllegalArgumentException("Amount must be positive");
         }
         
-        Optional<SkillNode> nodeOpt = treeRegistry.findNode(skillId);
-        if (nodeOpt.isEmpty()) {
-            return;
+        if (applyXp(playerData, skillId, amount)) {
+            updateDerivedState(playerData);
+        }
+    }
+    
+    public void awardXpBatch(PlayerSkillData playerData, Map<String, Long> awards) {
+        Objects.requireNonNull(playerData, "playerData cannot be null");
+        Objects.requireNonNull(awards, "awards cannot be null");
+        
+        for (Map.Entry<String, Long> entry : awards.entrySet()) {
+            Objects.requireNonNull(entry.getKey(), "skillId cannot be null");
+            Long amount = entry.getValue();
+            if (amount == null || amount <= 0) {
+                throw new IllegalArgumentException("Amount must be positive for " + entry.getKey());
+            }
+        }
+        
+        boolean applied = false;
+        for (Map.Entry<String, Long> entry : awards.entrySet()) {
+            applied |= applyXp(playerData, entry.getKey(), entry.getValue());
+        }
+        
+        if (applied) {
+            updateDerivedState(playerData);
+        }
+    }
+    
+    public boolean queueXp(PlayerSkillData playerData, String skillId, long amount) {
+        Objects.requireNonNull(playerData, "playerData cannot be null");
+        Objects.requireNonNull(skillId, "skillId cannot be null");
+        return queueXp(playerData, SkillKeyspace.ordinal(skillId), amount);
+    }
+    
+    public boolean queueXp(PlayerSkillData playerData, int skillKey, long amount) {
+        Objects.requireNonNull(playerData, "playerData cannot be null");
+        
+        if (amount <= 0) {
+            throw new IllegalArgumentException("Amount must be positive");
         }
         
-        SkillNode node = nodeOpt.get();
+        PendingXp pending = pendingXp.computeIfAbsent(playerData.playerId(), playerId -> new PendingXp());
+        return pending.add(skillKey, amount);
+    }
+    
+    public boolean flushPendingXp(PlayerSkillData playerData) {
+        return flushPendingXp(playerData, null);
+    }
+    
+    public boolean flushPendingXp(PlayerSkillData playerData, BitSet changedKeys) {
+        Objects.requireNonNull(playerData, "playerData cannot be null");
+        
+        PendingXp pending = pendingXp.get(playerData.playerId());
+        if (pending == null || pending.isEmpty()) {
+            return false;
+        }
         
-        propagateXpTopDown(playerData, node, amount);
+        PendingXp.Batch batch = pending.drain();
+        boolean applied = false;
+        for (int i = 0; i < batch.size(); i++) {
+            if (applyXp(playerData, SkillKeyspace.id(batch.keys()[i]), batch.amounts()[i])) {
+                applied = true;
+                if (changedKeys != null) {
+                    changedKeys.set(batch.keys()[i]);
+                }
+            }
+        }
         
-        calculator.invalidateCache(playerData.playerId());
+        if (applied) {
+            updateDerivedState(playerData);
+        }
+        return applied;
+    }
+    
+    public void unloadPlayer(UUID playerId) {
+        pendingXp.remove(playerId);
+        calculator.evict(playerId);
+        if (aggregator != null) {
+            aggregator.clearPlayerWeights(playerId);
+        }
+    }
+    
+    private boolean applyXp(PlayerSkillData playerData, String skillId, long amount) {
+        NodeRef ref = treeRegistry.resolve(skillId);
+        if (ref != null) {
+            long previousVersion = playerData.version();
+            int writes = propagateXpTopDown(playerData, ref, amount);
+            calculator.refreshPath(playerData, ref, previousVersion, writes);
+            return true;
+        }
         
+        Optional<SkillNode> nodeOpt = treeRegistry.findNode(skillId);
+        if (nodeOpt.isEmpty()) {
+            return false;
+        }
+        propagateXpTopDown(playerData, nodeOpt.get(), amount);
+        return true;
+    }
+    
+    private void recordXpDelta(PlayerSkillData playerData, String skillId, long newXp, long delta) {
+        if (aggregator != null) {
+            aggregator.recordXpDelta(playerData, skillId, newXp, delta);
+        }
+    }
+    
+    private void updateDerivedState(PlayerSkillData playerData) {
         if (aggregator != null) {
             aggregator.updatePlayerWeights(playerData.playerId(), playerData);
         }
     }
     
+    private int propagateXpTopDown(PlayerSkillData playerData, NodeRef ref, long amount) {
+        CompiledTree tree = ref.tree();
+        int[] path = tree.path(ref.ordinal());
+        int start = path.length > 1 ? 1 : 0;
+        
+        int writes = 0;
+        double multiplier = 1.0;
+        for (int i = start; i < path.length; i++) {
+            int ordinal = path[i];
+            int key = tree.key(ordinal);
+            int maxXp = tree.maxXp(ordinal);
+            long nodeXp = playerData.getIntrinsicXp(key);
+            long xpToAdd = (long) (amount * multiplier);
+            
+            if (nodeXp >= maxXp) {
+                if (config.debugXpFlow()) {
+                    System.out.println("[XP Flow] " + tree.id(ordinal) + " is maxed, passing through (depth: " + tree.depth(ordinal) + ")");
+                }
+            } else {
+                long newXp = Math.min(nodeXp + xpToAdd, maxXp);
+                playerData.setIntrinsicXp(key, newXp);
+                recordXpDelta(playerData, tree.id(ordinal), newXp, newXp - nodeXp);
+                writes++;
+                
+                if (config.debugXpFlow()) {
+                    System.out.println("[XP Flow] " + tree.id(ordinal) + " +=" + xpToAdd + " XP (depth: " + tree.depth(ordinal) + 
+                        ", multiplier: " + String.format("%.2f", multiplier) + ")");
+                }
+            }
+            
+            if (i < path.length - 1) {
+                multiplier *= config.parentXpDecay();
+            }
+        }
+        
+        return writes;
+    }
+    
     private void propagateXpTopDown(PlayerSkillData playerData, SkillNode node, long amount) {
         List<SkillNode> pathToClass = new ArrayList<>();
         SkillNode current = node;
@@ -69,13 +212,18 @@ public final class XpEngine {
             long xpToAdd = (long) (amount * multiplier);
             
             if (nodeXp >= pathNode.maxXp()) {
-                System.out.println("[XP Flow] " + pathNode.id() + " is maxed, passing through (depth: " + pathNode.depth() + ")");
+                if (config.debugXpFlow()) {
+                    System.out.println("[XP Flow] " + pathNode.id() + " is maxed, passing through (depth: " + pathNode.depth() + ")");
+                }
             } else {
                 long newXp = Math.min(nodeXp + xpToAdd, pathNode.maxXp());
                 playerData.setIntrinsicXp(pathNode.id(), newXp);
+                recordXpDelta(playerData, pathNode.id(), newXp, newXp - nodeXp);
                 
-                System.out.println("[XP Flow] " + pathNode.id() + " +=" + xpToAdd + " XP (depth: " + pathNode.depth() + 
-                    ", multiplier: " + String.format("%.2f", multiplier) + ")");
+                if (config.debugXpFlow()) {
+                    System.out.println("[XP Flow] " + pathNode.id() + " +=" + xpToAdd + " XP (depth: " + pathNode.depth() + 
+                        ", multiplier: " + String.format("%.2f", multiplier) + ")");
+                }
             }
             
             if (i < pathToClass.size() - 1) {
@@ -92,19 +240,28 @@ public final class XpEngine {
             throw new IllegalArgumentException("Amount cannot be negative");
         }
         
-        Optional<SkillNode> nodeOpt = treeRegistry.findNode(skillId);
-        if (nodeOpt.isEmpty()) {
-            return;
+        NodeRef ref = treeRegistry.resolve(skillId);
+        int maxXp;
+        if (ref != null) {
+            maxXp = ref.maxXp();
+        } else {
+            Optional<SkillNode> nodeOpt = treeRegistry.findNode(skillId);
+            if (nodeOpt.isEmpty()) {
+                return;
+            }
+            maxXp = nodeOpt.get().maxXp();
         }
         
-        SkillNode node = nodeOpt.get();
-        long cappedXp = Math.min(amount, node.maxXp());
+        long cappedXp = Math.min(amount, maxXp);
         
-        playerData.setIntrinsicXp(skillId, cappedXp);
-        calculator.invalidateCache(playerData.playerId());
+        if (ref != null) {
+            playerData.setIntrinsicXp(ref.key(), cappedXp);
+        } else {
+            playerData.setIntrinsicXp(skillId, cappedXp);
+        }
         
         if (aggregator != null) {
-            aggregator.updatePlayerWeights(playerData.playerId(), playerData);
+            aggregator.recomputePlayerWeights(playerData.playerId(), playerData);
         }
     }
     
@@ -112,49 +269,66 @@ public final class XpEngine {
         Objects.requireNonNull(playerData, "playerData cannot be null");
         Objects.requireNonNull(skillId, "skillId cannot be null");
         
-        List<SkillNode> nodes = treeRegistry.findAllNodes(skillId);
-        if (nodes.isEmpty()) {
-            return EffectiveXp.zero();
+        NodeIndex index = treeRegistry.nodeIndex();
+        AggregationPlan plan = index.plan(skillId);
+        if (plan != null && aggregator != null) {
+            return aggregateMultiTreeXp(playerData, plan);
         }
         
-        if (nodes.size() == 1) {
-            return calculator.calculateEffectiveXp(playerData, nodes.get(0));
+        NodeRef ref = index.ref(skillId);
+        if (ref != null) {
+            return calculator.calculateEffectiveXp(playerData, ref);
         }
         
-        return aggregateMultiTreeXp(playerData, nodes);
+        return treeRegistry.findNode(skillId)
+            .map(node -> calculator.calculateEffectiveXp(playerData, node))
+            .orElse(EffectiveXp.zero());
     }
     
-    private EffectiveXp aggregateMultiTreeXp(PlayerSkillData playerData, List<SkillNode> nodes) {
-        if (aggregator == null) {
-            return calculator.calculateEffectiveXp(playerData, nodes.get(0));
+    private EffectiveXp aggregateMultiTreeXp(PlayerSkillData playerData, AggregationPlan plan) {
+        EffectiveXp[] values = AGGREGATION_BUFFER.get();
+        if (values.length < plan.size()) {
+            values = new EffectiveXp[plan.size()];
+            AGGREGATION_BUFFER.set(values);
         }
         
-        Map<SkillTree, EffectiveXp> treeXpValues = new HashMap<>();
-        
-        for (SkillNode node : nodes) {
-            SkillTree tree = findTreeForNode(node);
-            if (tree == null) continue;
-            
-            EffectiveXp xp = calculator.calculateEffectiveXp(playerData, node);
-            treeXpValues.put(tree, xp);
+        for (int entry = 0; entry < plan.size(); entry++) {
+            values[entry] = calculator.calculateEffectiveXp(playerData, plan.ref(entry));
         }
         
-        return aggregator.aggregateXp(playerData.playerId(), nodes.get(0).id(), treeXpValues);
+        return aggregator.aggregateXp(playerData.playerId(), plan, values);
     }
     
-    private SkillTree findTreeForNode(SkillNode node) {
-        for (SkillTree tree : treeRegistry.getAllTrees()) {
-            if (tree.getNode(node.id()).isPresent()) {
-                return tree;
-            }
-        }
-        return null;
+    public TreeXpBuffer evaluateTree(PlayerSkillData playerData, CompiledTree tree) {
+        return calculator.evaluateTree(playerData, tree, TREE_BUFFER.get());
+    }
+    
+    public TreeXpBuffer evaluateTree(PlayerSkillData playerData, CompiledTree tree, TreeXpBuffer buffer) {
+        return calculator.evaluateTree(playerData, tree, buffer);
+    }
+    
+    public Optional<CompiledTree> getCompiledTree(SkillTree tree) {
+        return treeRegistry.getCompiledTree(tree.name()).filter(compiled -> compiled.tree() == tree);
+    }
+    
+    public boolean isSharedSkill(String skillId) {
+        return treeRegistry.nodeIndex().plan(skillId) != null;
     }
     
     public Map<String, EffectiveXp> getAllEffectiveXp(PlayerSkillData playerData, SkillTree tree) {
         Objects.requireNonNull(playerData, "playerData cannot be null");
         Objects.requireNonNull(tree, "tree cannot be null");
         
+        Optional<CompiledTree> compiled = getCompiledTree(tree);
+        if (compiled.isPresent()) {
+            TreeXpBuffer buffer = evaluateTree(playerData, compiled.get());
+            Map<String, EffectiveXp> results = new HashMap<>(buffer.size() * 2);
+            for (int ordinal = 0; ordinal < buffer.size(); ordinal++) {
+                results.put(compiled.get().id(ordinal), buffer.effectiveXp(ordinal));
+            }
+            return results;
+        }
+        
         Map<String, SkillNode> nodes = new HashMap<>();
         collectNodes(tree.root(), nodes);
         
@@ -4,18 +4,50 @@ import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
+import org.bukkit.event.player.AsyncPlayerPreLoginEvent;
 import org.bukkit.event.player.PlayerJoinEvent;
 import org.bukkit.event.player.PlayerQuitEvent;
+import org.shotrush.atom.engine.XpEngine;
 import org.shotrush.atom.manager.PlayerDataManager;
 
 import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.logging.Logger;
 
 public final class PlayerConnectionListener implements Listener {
     
     private final PlayerDataManager dataManager;
+    private final XpEngine xpEngine;
+    private final long prefetchTimeoutMillis;
+    private final Logger logger;
     
-    public PlayerConnectionListener(PlayerDataManager dataManager) {
+    public PlayerConnectionListener(PlayerDataManager dataManager, XpEngine xpEngine, long prefetchTimeoutMillis,
+                                    Logger logger) {
         this.dataManager = Objects.requireNonNull(dataManager, "dataManager cannot be null");
+        this.xpEngine = Objects.requireNonNull(xpEngine, "xpEngine cannot be null");
+        this.prefetchTimeoutMillis = prefetchTimeoutMillis;
+        this.logger = Objects.requireNonNull(logger, "logger cannot be null");
+    }
+    
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerPreLogin(AsyncPlayerPreLoginEvent event) {
+        if (event.getLoginResult() != AsyncPlayerPreLoginEvent.Result.ALLOWED || !dataManager.hasOfflineCache()) {
+            return;
+        }
+        
+        try {
+            dataManager.loadOfflinePlayerData(event.getUniqueId()).get(prefetchTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            logger.warning("Prefetch for " + event.getName() + " exceeded " + prefetchTimeoutMillis
+                + "ms; finishing the load after join");
+        } catch (ExecutionException e) {
+            logger.warning("Prefetch for " + event.getName() + " failed: " + e.getCause().getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
     }
     
     @EventHandler(priority = EventPriority.LOW)
@@ -33,7 +65,20 @@ public final class PlayerConnectionListener implements Listener {
     public void onPlayerQuit(PlayerQuitEvent event) {
         Player player = event.getPlayer();
         
-        dataManager.savePlayerData(player.getUniqueId())
-            .thenRun(() -> dataManager.unloadPlayerData(player.getUniqueId()));
+        dataManager.getCachedPlayerData(player.getUniqueId()).ifPresent(xpEngine::flushPendingXp);
+        
+        UUID playerId = player.getUniqueId();
+        dataManager.savePlayerData(playerId)
+            .whenComplete((ignored, error) -> {
+                if (error != null) {
+                    logger.warning("Quit save for " + player.getName() + " failed; the write-behind queue "
+                        + "keeps retrying it: " + error.getMessage());
+                }
+                if (player.getServer().getPlayer(playerId) != null) {
+                    return;
+                }
+                dataManager.unloadPlayerData(playerId);
+                xpEngine.unloadPlayer(playerId);
+            });
     }
 }
@@ -1,20 +1,49 @@
 package org.shotrush.atom.manager;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import org.shotrush.atom.model.PlayerSkillData;
 import org.shotrush.atom.storage.StorageProvider;
+import org.shotrush.atom.storage.WriteBehindQueue;
 
+import java.time.Duration;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
 
 public final class PlayerDataManager {
     
     private final StorageProvider storage;
+    private final WriteBehindQueue writeQueue;
     private final Map<UUID, PlayerSkillData> cache;
+    private final Map<UUID, CompletableFuture<PlayerSkillData>> inFlight;
+    private final Cache<UUID, PlayerSkillData> offlineCache;
+    private final PlayerSkillData.ChangeListener changeListener;
     
-    public PlayerDataManager(StorageProvider storage) {
+    public PlayerDataManager(StorageProvider storage, WriteBehindQueue writeQueue) {
+        this(storage, writeQueue, 0, 0, null);
+    }
+    
+    public PlayerDataManager(StorageProvider storage, WriteBehindQueue writeQueue,
+                             int offlineCacheSize, long offlineExpirySeconds,
+                             PlayerSkillData.ChangeListener changeListener) {
         this.storage = Objects.requireNonNull(storage, "storage cannot be null");
+        this.writeQueue = Objects.requireNonNull(writeQueue, "writeQueue cannot be null");
+        this.changeListener = changeListener;
         this.cache = new ConcurrentHashMap<>();
+        this.inFlight = new ConcurrentHashMap<>();
+        this.offlineCache = offlineCacheSize > 0
+            ? Caffeine.newBuilder()
+                .maximumSize(offlineCacheSize)
+                .expireAfterAccess(Duration.ofSeconds(Math.max(1, offlineExpirySeconds)))
+                .<UUID, PlayerSkillData>removalListener((playerId, data, cause) -> {
+                    if (cause.wasEvicted() && data != null && data.isDirty()) {
+                        writeQueue.enqueue(data);
+                    }
+                })
+                .build()
+            : null;
     }
     
     public CompletableFuture<PlayerSkillData> loadPlayerData(UUID playerId) {
@@ -25,21 +54,81 @@ public final class PlayerDataManager {
             return CompletableFuture.completedFuture(cached);
         }
         
-        return storage.loadPlayerData(playerId)
-            .thenApply(optData -> {
-                PlayerSkillData data = optData.orElseGet(() -> new PlayerSkillData(playerId));
-                cache.put(playerId, data);
-                return data;
-            });
+        return loadShared(playerId, true).thenApply(data -> promote(playerId, data));
+    }
+    
+    public CompletableFuture<PlayerSkillData> loadOfflinePlayerData(UUID playerId) {
+        Objects.requireNonNull(playerId, "playerId cannot be null");
+        
+        PlayerSkillData resident = findResident(playerId);
+        if (resident != null) {
+            return CompletableFuture.completedFuture(resident);
+        }
+        
+        return loadShared(playerId, false);
+    }
+    
+    private CompletableFuture<PlayerSkillData> loadShared(UUID playerId, boolean online) {
+        CompletableFuture<PlayerSkillData> promise = new CompletableFuture<>();
+        CompletableFuture<PlayerSkillData> existing = inFlight.putIfAbsent(playerId, promise);
+        if (existing != null) {
+            return existing;
+        }
+        
+        PlayerSkillData resident = findResident(playerId);
+        if (resident != null) {
+            promise.complete(resident);
+            inFlight.remove(playerId, promise);
+            return promise;
+        }
+        
+        storage.loadPlayerData(playerId).whenComplete((optData, error) -> {
+            if (error != null) {
+                promise.completeExceptionally(error);
+            } else {
+                promise.complete(place(playerId, optData.orElseGet(() -> new PlayerSkillData(playerId)), online));
+            }
+            inFlight.remove(playerId, promise);
+        });
+        return promise;
+    }
+    
+    private PlayerSkillData findResident(UUID playerId) {
+        PlayerSkillData data = cache.get(playerId);
+        if (data == null && offlineCache != null) {
+            data = offlineCache.getIfPresent(playerId);
+        }
+        if (data == null) {
+            data = writeQueue.pendingData(playerId).orElse(null);
+        }
+        return data;
+    }
+    
+    private PlayerSkillData place(UUID playerId, PlayerSkillData data, boolean online) {
+        data.setChangeListener(changeListener);
+        Map<UUID, PlayerSkillData> target = online || offlineCache == null ? cache : offlineCache.asMap();
+        PlayerSkillData existing = target.putIfAbsent(playerId, data);
+        return existing != null ? existing : data;
+    }
+    
+    private PlayerSkillData promote(UUID playerId, PlayerSkillData data) {
+        if (offlineCache != null) {
+            offlineCache.asMap().remove(playerId, data);
+        }
+        PlayerSkillData existing = cache.putIfAbsent(playerId, data);
+        return existing != null ? existing : data;
     }
     
     public CompletableFuture<Void> savePlayerData(UUID playerId) {
         PlayerSkillData data = cache.get(playerId);
+        if (data == null && offlineCache != null) {
+            data = offlineCache.getIfPresent(playerId);
+        }
         if (data == null || !data.isDirty()) {
             return CompletableFuture.completedFuture(null);
         }
         
-        return storage.savePlayerData(data);
+        return writeQueue.enqueue(data);
     }
     
     public CompletableFuture<Void> saveAllPlayerData() {
@@ -47,23 +136,46 @@ public final class PlayerDataManager {
         
         for (PlayerSkillData data : cache.values()) {
             if (data.isDirty()) {
-                futures.add(storage.savePlayerData(data));
+                futures.add(writeQueue.enqueue(data));
+            }
+        }
+        
+        if (offlineCache != null) {
+            for (PlayerSkillData data : offlineCache.asMap().values()) {
+                if (data.isDirty()) {
+                    futures.add(writeQueue.enqueue(data));
+                }
             }
         }
         
         return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]));
     }
     
+    public CompletableFuture<Void> checkpoint() {
+        long failures = writeQueue.failedBatches();
+        return saveAllPlayerData()
+            .thenCompose(ignored -> writeQueue.flush())
+            .thenRun(() -> {
+                if (writeQueue.failedBatches() != failures) {
+                    throw new CompletionException(new IllegalStateException("A write-behind batch failed during the checkpoint"));
+                }
+            });
+    }
+    
     public void unloadPlayerData(UUID playerId) {
         cache.remove(playerId);
     }
     
     public Optional<PlayerSkillData> getCachedPlayerData(UUID playerId) {
-        return Optional.ofNullable(cache.get(playerId));
+        PlayerSkillData data = cache.get(playerId);
+        if (data == null && offlineCache != null) {
+            data = offlineCache.getIfPresent(playerId);
+        }
+        return Optional.ofNullable(data);
     }
     
-    public PlayerSkillData getOrCreatePlayerData(UUID playerId) {
-        return cache.computeIfAbsent(playerId, PlayerSkillData::new);
+    public Collection<PlayerSkillData> getAllCachedPlayerData() {
+        return Collections.unmodifiableCollection(cache.values());
     }
     
     public Set<UUID> getCachedPlayers() {
@@ -74,7 +186,22 @@ public final class PlayerDataManager {
         return cache.size();
     }
     
+    public boolean hasOfflineCache() {
+        return offlineCache != null;
+    }
+    
+    public long getOfflineCacheSize() {
+        return offlineCache != null ? offlineCache.estimatedSize() : 0L;
+    }
+    
     public void clearCache() {
         cache.clear();
+        if (offlineCache != null) {
+            offlineCache.invalidateAll();
+        }
+    }
+    
+    public void shutdown() {
+        writeQueue.close();
     }
 }
@@ -24,8 +24,11 @@ public record EffectiveXp(
     
     public static EffectiveXp of(long intrinsicXp, long honoraryXp, int maxXp) {
         long totalXp = intrinsicXp + honoraryXp;
-        double progressPercent = maxXp > 0 ? Math.min(1.0, (double) totalXp / maxXp) : 0.0;
-        return new EffectiveXp(intrinsicXp, honoraryXp, totalXp, progressPercent);
+        return new EffectiveXp(intrinsicXp, honoraryXp, totalXp, progressOf(totalXp, maxXp));
+    }
+    
+    public static double progressOf(long totalXp, int maxXp) {
+        return maxXp > 0 ? Math.min(1.0, (double) totalXp / maxXp) : 0.0;
     }
     
     public static EffectiveXp zero() {
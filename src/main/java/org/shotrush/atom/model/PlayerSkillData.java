@@ -1,27 +1,36 @@
 package org.shotrush.atom.model;
 
-import java.util.Map;
-import java.util.UUID;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLongArray;
 
 public final class PlayerSkillData {
     
+    private static final long ABSENT = -1L;
+    
     private final UUID playerId;
-    private final Map<String, Long> intrinsicXp;
+    private final Map<String, Long> intrinsicXpView;
+    private final BitSet dirtySkills;
+    private volatile AtomicLongArray intrinsicXp;
+    private volatile int skillCount;
+    private volatile long version;
     private volatile long lastModified;
     private volatile boolean dirty;
+    private volatile ChangeListener changeListener;
     
     public PlayerSkillData(UUID playerId) {
         this.playerId = playerId;
-        this.intrinsicXp = new ConcurrentHashMap<>();
+        this.intrinsicXp = newArray(SkillKeyspace.size());
+        this.intrinsicXpView = new IntrinsicXpView();
+        this.dirtySkills = new BitSet();
         this.lastModified = System.currentTimeMillis();
         this.dirty = false;
     }
     
     public PlayerSkillData(UUID playerId, Map<String, Long> intrinsicXp) {
-        this.playerId = playerId;
-        this.intrinsicXp = new ConcurrentHashMap<>(intrinsicXp);
-        this.lastModified = System.currentTimeMillis();
+        this(playerId);
+        for (Map.Entry<String, Long> entry : intrinsicXp.entrySet()) {
+            store(SkillKeyspace.ordinal(entry.getKey()), entry.getValue());
+        }
         this.dirty = false;
     }
     
@@ -30,52 +39,282 @@ public final class PlayerSkillData {
     }
     
     public long getIntrinsicXp(String skillId) {
-        return intrinsicXp.getOrDefault(skillId, 0L);
+        int ordinal = SkillKeyspace.lookup(skillId);
+        return ordinal >= 0 ? getIntrinsicXp(ordinal) : 0L;
+    }
+    
+    public long getIntrinsicXp(int ordinal) {
+        long xp = raw(ordinal);
+        return xp == ABSENT ? 0L : xp;
     }
     
     public void setIntrinsicXp(String skillId, long xp) {
+        setIntrinsicXp(SkillKeyspace.ordinal(skillId), xp);
+    }
+    
+    public void setIntrinsicXp(int ordinal, long xp) {
         if (xp < 0) {
             throw new IllegalArgumentException("XP cannot be negative");
         }
-        intrinsicXp.put(skillId, xp);
-        markDirty();
+        synchronized (this) {
+            store(ordinal, xp);
+            markDirty(ordinal);
+            notifyChanged(ordinal, xp);
+        }
     }
     
     public void addIntrinsicXp(String skillId, long amount) {
+        addIntrinsicXp(SkillKeyspace.ordinal(skillId), amount);
+    }
+    
+    public void addIntrinsicXp(int ordinal, long amount) {
         if (amount < 0) {
             throw new IllegalArgumentException("Amount cannot be negative");
         }
-        intrinsicXp.merge(skillId, amount, Long::sum);
-        markDirty();
+        synchronized (this) {
+            long xp = getIntrinsicXp(ordinal) + amount;
+            store(ordinal, xp);
+            markDirty(ordinal);
+            notifyChanged(ordinal, xp);
+        }
+    }
+    
+    public boolean removeIntrinsicXp(String skillId) {
+        int ordinal = SkillKeyspace.lookup(skillId);
+        return ordinal >= 0 && removeIntrinsicXp(ordinal);
+    }
+    
+    public synchronized boolean removeIntrinsicXp(int ordinal) {
+        AtomicLongArray values = intrinsicXp;
+        if (ordinal < 0 || ordinal >= values.length() || values.getAndSet(ordinal, ABSENT) == ABSENT) {
+            return false;
+        }
+        skillCount--;
+        version++;
+        markDirty(ordinal);
+        ChangeListener listener = changeListener;
+        if (listener != null) {
+            listener.skillRemoved(playerId, ordinal);
+        }
+        return true;
     }
     
     public boolean hasXp(String skillId) {
-        return intrinsicXp.containsKey(skillId);
+        int ordinal = SkillKeyspace.lookup(skillId);
+        return ordinal >= 0 && hasXp(ordinal);
+    }
+    
+    public boolean hasXp(int ordinal) {
+        return raw(ordinal) != ABSENT;
+    }
+    
+    public long version() {
+        return version;
+    }
+    
+    public int skillCount() {
+        return skillCount;
+    }
+    
+    public void forEachIntrinsicXp(SkillXpConsumer consumer) {
+        AtomicLongArray values = intrinsicXp;
+        for (int ordinal = 0; ordinal < values.length(); ordinal++) {
+            long xp = values.get(ordinal);
+            if (xp != ABSENT) {
+                consumer.accept(ordinal, xp);
+            }
+        }
+    }
+    
+    public Map<String, Long> intrinsicXpView() {
+        return intrinsicXpView;
     }
     
     public Map<String, Long> getAllIntrinsicXp() {
-        return Map.copyOf(intrinsicXp);
+        Map<String, Long> copy = new HashMap<>(skillCount * 2);
+        forEachIntrinsicXp((ordinal, xp) -> copy.put(SkillKeyspace.id(ordinal), xp));
+        return Collections.unmodifiableMap(copy);
     }
     
     public long lastModified() {
         return lastModified;
     }
     
+    public void setChangeListener(ChangeListener listener) {
+        this.changeListener = listener;
+    }
+    
     public boolean isDirty() {
         return dirty;
     }
     
-    public void markClean() {
+    public synchronized void markClean() {
+        dirtySkills.clear();
+        this.dirty = false;
+    }
+    
+    public synchronized SkillDelta drainDelta() {
+        int[] updatedKeys = new int[dirtySkills.cardinality()];
+        long[] updatedXp = new long[updatedKeys.length];
+        int[] removedKeys = new int[updatedKeys.length];
+        int updated = 0;
+        int removed = 0;
+        
+        for (int ordinal = dirtySkills.nextSetBit(0); ordinal >= 0; ordinal = dirtySkills.nextSetBit(ordinal + 1)) {
+            long xp = raw(ordinal);
+            if (xp == ABSENT) {
+                removedKeys[removed++] = ordinal;
+            } else {
+                updatedKeys[updated] = ordinal;
+                updatedXp[updated++] = xp;
+            }
+        }
+        
+        dirtySkills.clear();
         this.dirty = false;
+        return new SkillDelta(Arrays.copyOf(updatedKeys, updated), Arrays.copyOf(updatedXp, updated),
+            Arrays.copyOf(removedKeys, removed));
     }
     
-    private void markDirty() {
+    public synchronized void restoreDelta(SkillDelta delta) {
+        for (int ordinal : delta.updatedKeys()) {
+            dirtySkills.set(ordinal);
+        }
+        for (int ordinal : delta.removedKeys()) {
+            dirtySkills.set(ordinal);
+        }
+        this.dirty = true;
+    }
+    
+    private void markDirty(int ordinal) {
+        dirtySkills.set(ordinal);
         this.dirty = true;
         this.lastModified = System.currentTimeMillis();
     }
     
+    private void notifyChanged(int ordinal, long xp) {
+        ChangeListener listener = changeListener;
+        if (listener != null) {
+            listener.xpChanged(playerId, ordinal, xp);
+        }
+    }
+    
+    private long raw(int ordinal) {
+        AtomicLongArray values = intrinsicXp;
+        return ordinal >= 0 && ordinal < values.length() ? values.get(ordinal) : ABSENT;
+    }
+    
+    private void store(int ordinal, long xp) {
+        AtomicLongArray values = intrinsicXp;
+        if (ordinal >= values.length()) {
+            values = grow(values, ordinal + 1);
+        }
+        if (values.getAndSet(ordinal, xp) == ABSENT) {
+            skillCount++;
+        }
+        version++;
+    }
+    
+    private AtomicLongArray grow(AtomicLongArray values, int minCapacity) {
+        AtomicLongArray grown = newArray(Math.max(minCapacity, Math.max(SkillKeyspace.size(), values.length() * 2)));
+        for (int i = 0; i < values.length(); i++) {
+            grown.set(i, values.get(i));
+        }
+        this.intrinsicXp = grown;
+        return grown;
+    }
+    
+    private static AtomicLongArray newArray(int capacity) {
+        AtomicLongArray values = new AtomicLongArray(Math.max(capacity, 16));
+        for (int i = 0; i < values.length(); i++) {
+            values.set(i, ABSENT);
+        }
+        return values;
+    }
+    
     @Override
     public String toString() {
-        return "PlayerSkillData{playerId=" + playerId + ", skills=" + intrinsicXp.size() + ", dirty=" + dirty + "}";
+        return "PlayerSkillData{playerId=" + playerId + ", skills=" + skillCount + ", dirty=" + dirty + "}";
+    }
+    
+    public record SkillDelta(int[] updatedKeys, long[] updatedXp, int[] removedKeys) {
+        
+        public boolean isEmpty() {
+            return updatedKeys.length == 0 && removedKeys.length == 0;
+        }
+    }
+    
+    public interface ChangeListener {
+        void xpChanged(UUID playerId, int ordinal, long xp);
+        
+        void skillRemoved(UUID playerId, int ordinal);
+    }
+    
+    @FunctionalInterface
+    public interface SkillXpConsumer {
+        void accept(int ordinal, long xp);
+    }
+    
+    private final class IntrinsicXpView extends AbstractMap<String, Long> {
+        
+        @Override
+        public Long get(Object key) {
+            if (!(key instanceof String skillId)) {
+                return null;
+            }
+            int ordinal = SkillKeyspace.lookup(skillId);
+            long xp = raw(ordinal);
+            return xp == ABSENT ? null : xp;
+        }
+        
+        @Override
+        public boolean containsKey(Object key) {
+            return get(key) != null;
+        }
+        
+        @Override
+        public int size() {
+            return skillCount;
+        }
+        
+        @Override
+        public Set<Entry<String, Long>> entrySet() {
+            return new AbstractSet<>() {
+                @Override
+                public Iterator<Entry<String, Long>> iterator() {
+                    AtomicLongArray values = intrinsicXp;
+                    return new Iterator<>() {
+                        private int next = advance(0);
+                        
+                        private int advance(int from) {
+                            while (from < values.length() && values.get(from) == ABSENT) {
+                                from++;
+                            }
+                            return from;
+                        }
+                        
+                        @Override
+                        public boolean hasNext() {
+                            return next < values.length();
+                        }
+                        
+                        @Override
+                        public Entry<String, Long> next() {
+                            if (!hasNext()) {
+                                throw new NoSuchElementException();
+                            }
+                            int ordinal = next;
+                            next = advance(ordinal + 1);
+                            return new SimpleImmutableEntry<>(SkillKeyspace.id(ordinal), values.get(ordinal));
+                        }
+                    };
+                }
+                
+                @Override
+                public int size() {
+                    return skillCount;
+                }
+            };
+        }
     }
 }
@@ -0,0 +1,59 @@
+package org.shotrush.atom.model;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+public final class SkillKeyspace {
+    
+    private static final Map<String, Integer> ORDINALS = new ConcurrentHashMap<>();
+    private static volatile String[] ids = new String[128];
+    private static volatile int size = 0;
+    
+    private SkillKeyspace() {}
+    
+    public static int ordinal(String skillId) {
+        Integer ordinal = ORDINALS.get(skillId);
+        if (ordinal != null) {
+            return ordinal;
+        }
+        return intern(skillId);
+    }
+    
+    private static synchronized int intern(String skillId) {
+        Objects.requireNonNull(skillId, "skillId cannot be null");
+        
+        Integer existing = ORDINALS.get(skillId);
+        if (existing != null) {
+            return existing;
+        }
+        
+        int ordinal = size;
+        String[] current = ids;
+        if (ordinal == current.length) {
+            current = Arrays.copyOf(current, current.length * 2);
+        }
+        current[ordinal] = skillId;
+        ids = current;
+        size = ordinal + 1;
+        ORDINALS.put(skillId, ordinal);
+        return ordinal;
+    }
+    
+    public static int lookup(String skillId) {
+        Integer ordinal = ORDINALS.get(skillId);
+        return ordinal != null ? ordinal : -1;
+    }
+    
+    public static String id(int ordinal) {
+        if (ordinal < 0 || ordinal >= size) {
+            throw new IndexOutOfBoundsException("Unknown skill ordinal: " + ordinal);
+        }
+        return ids[ordinal];
+    }
+    
+    public static int size() {
+        return size;
+    }
+}
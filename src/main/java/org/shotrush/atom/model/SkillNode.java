@@ -11,6 +11,7 @@ public final class SkillNode {
     private final Map<String, SkillNode> children;
     private final int maxXp;
     private final NodeType type;
+    private final List<SkillNode> ancestors;
     
     private SkillNode(Builder builder) {
         this.id = Objects.requireNonNull(builder.id, "id cannot be null");
@@ -19,6 +20,17 @@ public final class SkillNode {
         this.children = new ConcurrentHashMap<>(builder.children);
         this.maxXp = builder.maxXp;
         this.type = Objects.requireNonNull(builder.type, "type cannot be null");
+        this.ancestors = collectAncestors(parent);
+    }
+    
+    private static List<SkillNode> collectAncestors(SkillNode parent) {
+        if (parent == null) {
+            return List.of();
+        }
+        List<SkillNode> ancestors = new ArrayList<>(parent.ancestors.size() + 1);
+        ancestors.add(parent);
+        ancestors.addAll(parent.ancestors);
+        return Collections.unmodifiableList(ancestors);
     }
     
     public String id() {
@@ -54,12 +66,6 @@ public final class SkillNode {
     }
     
     public List<SkillNode> ancestors() {
-        List<SkillNode> ancestors = new ArrayList<>();
-        SkillNode current = parent;
-        while (current != null) {
-            ancestors.add(current);
-            current = current.parent;
-        }
         return ancestors;
     }
     
@@ -77,13 +83,7 @@ public final class SkillNode {
     }
     
     public int depth() {
-        int depth = 0;
-        SkillNode current = parent;
-        while (current != null) {
-            depth++;
-            current = current.parent;
-        }
-        return depth;
+        return ancestors.size();
     }
     
     @Override
@@ -93,7 +93,7 @@ public final class AttributeModifierSystem {
         
         Map<Attribute, Double> attributeChanges = new HashMap<>();
         
-        for (Map.Entry<String, Long> entry : playerData.getAllIntrinsicXp().entrySet()) {
+        for (Map.Entry<String, Long> entry : playerData.intrinsicXpView().entrySet()) {
             String skillId = entry.getKey();
             SkillNode node = allNodes.get(skillId);
             if (node == null) continue;
@@ -127,7 +127,7 @@ public final class AttributeModifierSystem {
         Map<Attribute, Double> modifiers = new HashMap<>();
         
         
-        long currentXp = playerData.getAllIntrinsicXp().getOrDefault(node.id(), 0L);
+        long currentXp = playerData.getIntrinsicXp(node.id());
         double xpRatio = (double) currentXp / node.maxXp();
         
         
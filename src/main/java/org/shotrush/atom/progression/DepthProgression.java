@@ -44,22 +44,39 @@ public final class DepthProgression {
             Map<String, SkillNode> allNodes,
             Map<String, SpecializationMetrics> metrics) {
         
-        Map<String, Double> weights = new HashMap<>();
         Map<String, List<NodeProgress>> treeProgress = groupByTree(playerData, allNodes);
         
-        double totalActivity = 0.0;
         Map<String, Double> treeActivity = new HashMap<>();
-        
         for (Map.Entry<String, List<NodeProgress>> entry : treeProgress.entrySet()) {
             String treeName = entry.getKey();
-            double activity = calculateTreeActivity(entry.getValue(), metrics.get(treeName));
-            treeActivity.put(treeName, activity);
+            treeActivity.put(treeName, calculateTreeActivity(entry.getValue(), metrics.get(treeName)));
+        }
+        
+        return normalizeTreeActivity(treeActivity);
+    }
+    
+    public static Map<String, Long> calculateTreeXp(
+            PlayerSkillData playerData,
+            Map<String, SkillNode> allNodes) {
+        
+        Map<String, Long> treeXp = new HashMap<>();
+        for (Map.Entry<String, List<NodeProgress>> entry : groupByTree(playerData, allNodes).entrySet()) {
+            treeXp.put(entry.getKey(), entry.getValue().stream().mapToLong(p -> p.xp).sum());
+        }
+        return treeXp;
+    }
+    
+    public static Map<String, Double> normalizeTreeActivity(Map<String, Double> treeActivity) {
+        Map<String, Double> weights = new HashMap<>();
+        
+        double totalActivity = 0.0;
+        for (double activity : treeActivity.values()) {
             totalActivity += activity;
         }
         
         if (totalActivity == 0.0) {
-            for (String treeName : treeProgress.keySet()) {
-                weights.put(treeName, 1.0 / treeProgress.size());
+            for (String treeName : treeActivity.keySet()) {
+                weights.put(treeName, 1.0 / treeActivity.size());
             }
             return weights;
         }
@@ -82,10 +99,14 @@ public final class DepthProgression {
         if (progress.isEmpty() || metrics == null) return 0.0;
         
         double totalXp = progress.stream().mapToLong(p -> p.xp).sum();
+        return totalXp * activityFactor(metrics);
+    }
+    
+    public static double activityFactor(SpecializationMetrics metrics) {
         double depthFactor = metrics.averageDepth() / 5.0;
         double specializationFactor = metrics.specializationScore();
         
-        return totalXp * (1.0 + depthFactor + specializationFactor);
+        return 1.0 + depthFactor + specializationFactor;
     }
     
     
@@ -96,30 +117,31 @@ public final class DepthProgression {
         Map<String, List<NodeProgress>> grouped = new HashMap<>();
         Map<String, List<NodeProgress>> dynamic = new HashMap<>();
         
-        for (Map.Entry<String, Long> entry : playerData.getAllIntrinsicXp().entrySet()) {
+        for (Map.Entry<String, Long> entry : playerData.intrinsicXpView().entrySet()) {
             String skillId = entry.getKey();
             long xp = entry.getValue();
             
             SkillNode node = allNodes.get(skillId);
             if (node == null) continue;
             
-            if (isDynamicNode(skillId, xp, allNodes)) {
-                String cluster = findDynamicCluster(skillId, xp, playerData, allNodes);
-                dynamic.computeIfAbsent(cluster, k -> new ArrayList<>())
-                       .add(new NodeProgress(node, xp));
-            } else {
-                String treeName = extractTreeName(skillId);
-                grouped.computeIfAbsent(treeName, k -> new ArrayList<>())
-                       .add(new NodeProgress(node, xp));
-            }
+            Map<String, List<NodeProgress>> target = isDynamicNode(skillId, xp, allNodes) ? dynamic : grouped;
+            target.computeIfAbsent(groupName(skillId, xp, playerData, allNodes), k -> new ArrayList<>())
+                  .add(new NodeProgress(node, xp));
         }
         
         grouped.putAll(dynamic);
         return grouped;
     }
     
+    public static String groupName(String skillId, long xp, PlayerSkillData playerData, Map<String, SkillNode> allNodes) {
+        if (isDynamicNode(skillId, xp, allNodes)) {
+            return findDynamicCluster(skillId, xp, playerData, allNodes);
+        }
+        return extractTreeName(skillId);
+    }
+    
     
-    private static String extractTreeName(String skillId) {
+    public static String extractTreeName(String skillId) {
         int firstDot = skillId.indexOf('.');
         return firstDot > 0 ? skillId.substring(0, firstDot) : skillId;
     }
@@ -170,10 +192,10 @@ public final class DepthProgression {
     private static String generateHyperSpecialization(SkillNode node, PlayerSkillData data, Map<String, SkillNode> allNodes) {
         if (node.depth() < 3) return null;
         
-        long nodeXp = data.getAllIntrinsicXp().getOrDefault(node.id(), 0L);
+        long nodeXp = data.getIntrinsicXp(node.id());
         Map<String, Long> relatedSkills = new HashMap<>();
         
-        for (Map.Entry<String, Long> entry : data.getAllIntrinsicXp().entrySet()) {
+        for (Map.Entry<String, Long> entry : data.intrinsicXpView().entrySet()) {
             SkillNode other = allNodes.get(entry.getKey());
             if (other == null || other.depth() < 2) continue;
             
@@ -214,7 +236,7 @@ public final class DepthProgression {
         Map<String, List<SkillNode>> potentialClusters = new HashMap<>();
         
         for (SkillNode other : allNodes.values()) {
-            long otherXp = data.getAllIntrinsicXp().getOrDefault(other.id(), 0L);
+            long otherXp = data.getIntrinsicXp(other.id());
             if (otherXp < other.maxXp() * 1.2) continue;
             
             double similarity = calculateSimilarity(node, other, data);
@@ -240,8 +262,8 @@ public final class DepthProgression {
     private static double calculateSimilarity(SkillNode n1, SkillNode n2, PlayerSkillData data) {
         double depthSim = 1.0 - Math.abs(n1.depth() - n2.depth()) / 5.0;
         
-        long xp1 = data.getAllIntrinsicXp().getOrDefault(n1.id(), 0L);
-        long xp2 = data.getAllIntrinsicXp().getOrDefault(n2.id(), 0L);
+        long xp1 = data.getIntrinsicXp(n1.id());
+        long xp2 = data.getIntrinsicXp(n2.id());
         double xpSim = Math.min(xp1, xp2) / (double) Math.max(xp1, xp2);
         
         String[] parts1 = n1.id().split("\\.");
@@ -308,7 +330,7 @@ public final class DepthProgression {
     
     
     private static double getXpRatio(SkillNode node, PlayerSkillData playerData) {
-        long currentXp = playerData.getAllIntrinsicXp().getOrDefault(node.id(), 0L);
+        long currentXp = playerData.getIntrinsicXp(node.id());
         return (double) currentXp / node.maxXp();
     }
     
@@ -356,7 +378,7 @@ public final class DepthProgression {
         double depthBonus = nodeDepth * 0.1 * specializationScore;
         double specBonus = specializationScore * 0.3;
         
-        long xp = playerData.getAllIntrinsicXp().getOrDefault(node.id(), 0L);
+        long xp = playerData.getIntrinsicXp(node.id());
         double xpRatioBonus = Math.min(1.0, (xp / (double) node.maxXp()) - 1.5);
         if (xpRatioBonus > 0 && nodeDepth >= 2) {
             double hyperBonus = xpRatioBonus * 2.0;
@@ -378,9 +400,9 @@ public final class DepthProgression {
         
         List<SkillNode> ancestors = node.ancestors();
         
-        long pathXp = playerData.getAllIntrinsicXp().getOrDefault(node.id(), 0L);
+        long pathXp = playerData.getIntrinsicXp(node.id());
         for (SkillNode ancestor : ancestors) {
-            pathXp += playerData.getAllIntrinsicXp().getOrDefault(ancestor.id(), 0L);
+            pathXp += playerData.getIntrinsicXp(ancestor.id());
         }
         
         
@@ -47,7 +47,7 @@ public final class RecipeManager implements Listener {
             return;
         }
         
-        Map<String, SkillNode> allNodes = buildNodeIndex();
+        Map<String, SkillNode> allNodes = treeRegistry.nodeIndex().nodes();
         PlayerSkillData data = dataOpt.get();
         
         boolean canCraft = checkRecipeUnlock(player, data, allNodes, recipe);
@@ -83,7 +83,7 @@ public final class RecipeManager implements Listener {
             return;
         }
         
-        Map<String, SkillNode> allNodes = buildNodeIndex();
+        Map<String, SkillNode> allNodes = treeRegistry.nodeIndex().nodes();
         boolean hasUnlock = checkRecipeUnlock(player, dataOpt.get(), allNodes, recipe);
         
         if (!hasUnlock) {
@@ -101,16 +101,6 @@ public final class RecipeManager implements Listener {
         }
     }
     
-    private Map<String, SkillNode> buildNodeIndex() {
-        Map<String, SkillNode> index = new HashMap<>();
-        for (var tree : treeRegistry.getAllTrees()) {
-            for (String skillId : tree.getAllSkillIds()) {
-                tree.getNode(skillId).ifPresent(node -> index.put(skillId, node));
-            }
-        }
-        return index;
-    }
-    
     
     public void updatePlayerRecipes(Player player, PlayerSkillData playerData, Map<String, SkillNode> allNodes) {
         Set<NamespacedKey> currentRecipes = playerDiscoveredRecipes.getOrDefault(player.getUniqueId(), new HashSet<>());
@@ -174,7 +164,7 @@ public final class RecipeManager implements Listener {
         int relevantSkills = 0;
         int totalSkillsWithXp = 0;
         
-        for (Map.Entry<String, Long> entry : playerData.getAllIntrinsicXp().entrySet()) {
+        for (Map.Entry<String, Long> entry : playerData.intrinsicXpView().entrySet()) {
             SkillNode node = allNodes.get(entry.getKey());
             if (node == null) continue;
             
@@ -220,7 +210,7 @@ public final class RecipeManager implements Listener {
     
     
     public void initializePlayerRecipes(Player player, PlayerSkillData playerData) {
-        Map<String, SkillNode> allNodes = buildNodeIndex();
+        Map<String, SkillNode> allNodes = treeRegistry.nodeIndex().nodes();
         
         Iterator<Recipe> recipeIterator = Bukkit.recipeIterator();
         while (recipeIterator.hasNext()) {
@@ -259,11 +259,12 @@ public final class UnlockSystem {
         double maxUnlockScore = 0.0;
         Map<String, Double> relatedSkillScores = new HashMap<>();
         
-        for (String skillId : playerData.getAllIntrinsicXp().keySet()) {
+        for (Map.Entry<String, Long> entry : playerData.intrinsicXpView().entrySet()) {
+            String skillId = entry.getKey();
             SkillNode node = allNodes.get(skillId);
             if (node == null) continue;
             
-            long xp = playerData.getAllIntrinsicXp().get(skillId);
+            long xp = entry.getValue();
             double ratio = (double) xp / node.maxXp();
             
             Set<T> unlocks = unlockMap.get(skillId);
@@ -279,7 +280,7 @@ public final class UnlockSystem {
             for (SkillNode ancestor : node.ancestors()) {
                 Set<T> ancestorUnlocks = unlockMap.get(ancestor.id());
                 if (ancestorUnlocks != null && ancestorUnlocks.contains(item)) {
-                    long ancestorXp = playerData.getAllIntrinsicXp().getOrDefault(ancestor.id(), 0L);
+                    long ancestorXp = playerData.getIntrinsicXp(ancestor.id());
                     double ancestorRatio = (double) ancestorXp / ancestor.maxXp();
                     double ancestorScore = ancestorRatio * 0.8;
                     maxUnlockScore = Math.max(maxUnlockScore, ancestorScore);
@@ -316,11 +317,12 @@ public final class UnlockSystem {
         
         Set<T> unlocked = new HashSet<>();
         
-        for (String skillId : playerData.getAllIntrinsicXp().keySet()) {
+        for (Map.Entry<String, Long> entry : playerData.intrinsicXpView().entrySet()) {
+            String skillId = entry.getKey();
             SkillNode node = allNodes.get(skillId);
             if (node == null) continue;
             
-            long xp = playerData.getAllIntrinsicXp().get(skillId);
+            long xp = entry.getValue();
             double ratio = (double) xp / node.maxXp();
             
             if (ratio >= 0.1) {
@@ -0,0 +1,392 @@
+package org.shotrush.atom.storage;
+
+import org.shotrush.atom.model.PlayerSkillData;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+
+final class PackedRecordFormat implements PlayerRecordFormat {
+    
+    static final int RECORD_VERSION = 1;
+    
+    private final Map<String, Integer> dictionaryIds = new ConcurrentHashMap<>();
+    private final Map<Integer, String> dictionaryNames = new ConcurrentHashMap<>();
+    private final Map<String, Integer> uncommittedIds = new HashMap<>();
+    private int nextOrdinal;
+    private int committedNextOrdinal;
+    
+    @Override
+    public void createTables(Connection conn) throws SQLException {
+        String createDictionaryTable = """
+            CREATE TABLE IF NOT EXISTS atom_skill_dictionary (
+                skill_ordinal INTEGER PRIMARY KEY,
+                skill_id TEXT NOT NULL UNIQUE
+            )
+        """;
+        
+        String createRecordsTable = """
+            CREATE TABLE IF NOT EXISTS atom_player_records (
+                player_key BLOB PRIMARY KEY,
+                last_modified INTEGER NOT NULL,
+                record BLOB NOT NULL
+            ) WITHOUT ROWID
+        """;
+        
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute(createDictionaryTable);
+            stmt.execute(createRecordsTable);
+        }
+        
+        loadDictionary(conn);
+        migrateRows(conn);
+    }
+    
+    private void loadDictionary(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT skill_ordinal, skill_id FROM atom_skill_dictionary")) {
+            while (rs.next()) {
+                int ordinal = rs.getInt("skill_ordinal");
+                String skillId = rs.getString("skill_id");
+                dictionaryIds.put(skillId, ordinal);
+                dictionaryNames.put(ordinal, skillId);
+                nextOrdinal = Math.max(nextOrdinal, ordinal + 1);
+            }
+        }
+        committedNextOrdinal = nextOrdinal;
+    }
+    
+    private void migrateRows(Connection conn) throws SQLException {
+        if (!tableExists(conn, "atom_skills") || !tableExists(conn, "atom_players")) {
+            return;
+        }
+        
+        String query = """
+            SELECT p.player_id, p.last_modified, s.skill_id, s.intrinsic_xp
+            FROM atom_players p LEFT JOIN atom_skills s ON s.player_id = p.player_id
+            ORDER BY p.player_id
+        """;
+        
+        String upsertRecord = """
+            INSERT INTO atom_player_records (player_key, last_modified, record)
+            VALUES (?, ?, ?)
+            ON CONFLICT(player_key) DO UPDATE SET last_modified = excluded.last_modified, record = excluded.record
+            WHERE excluded.last_modified > atom_player_records.last_modified
+        """;
+        
+        conn.setAutoCommit(false);
+        try (PreparedStatement insertDictionary = prepareDictionaryInsert(conn);
+             PreparedStatement insertRecord = conn.prepareStatement(upsertRecord);
+             Statement stmt = conn.createStatement()) {
+            int migrated = 0;
+            
+            try (ResultSet rs = stmt.executeQuery(query)) {
+                String currentId = null;
+                long lastModified = 0L;
+                Map<String, Long> skills = new HashMap<>();
+                
+                while (rs.next()) {
+                    String playerId = rs.getString("player_id");
+                    if (!playerId.equals(currentId)) {
+                        if (currentId != null) {
+                            addRecord(insertRecord, insertDictionary, UUID.fromString(currentId), lastModified, skills);
+                            if (++migrated % 512 == 0) {
+                                insertRecord.executeBatch();
+                            }
+                        }
+                        currentId = playerId;
+                        lastModified = rs.getLong("last_modified");
+                        skills.clear();
+                    }
+                    String skillId = rs.getString("skill_id");
+                    if (skillId != null) {
+                        skills.put(skillId, rs.getLong("intrinsic_xp"));
+                    }
+                }
+                
+                if (currentId != null) {
+                    addRecord(insertRecord, insertDictionary, UUID.fromString(currentId), lastModified, skills);
+                    migrated++;
+                }
+            }
+            
+            insertRecord.executeBatch();
+            stmt.execute("DROP INDEX IF EXISTS idx_skill_lookup");
+            stmt.execute("DROP INDEX IF EXISTS idx_player_modified");
+            retireTable(stmt, "atom_skills");
+            retireTable(stmt, "atom_players");
+            conn.commit();
+            afterCommit();
+            
+            System.out.println("[Storage] Migrated " + migrated + " players to packed records; "
+                + "the row tables were kept as atom_players_legacy and atom_skills_legacy");
+        } catch (SQLException e) {
+            conn.rollback();
+            afterRollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(true);
+        }
+    }
+    
+    static void retireTable(Statement stmt, String table) throws SQLException {
+        stmt.execute("DROP TABLE IF EXISTS " + table + "_legacy");
+        stmt.execute("ALTER TABLE " + table + " RENAME TO " + table + "_legacy");
+    }
+    
+    static boolean tableExists(Connection conn, String table) throws SQLException {
+        String query = "SELECT 1 FROM sqlite_master WHERE type = 'table' AND name = ?";
+        try (PreparedStatement stmt = conn.prepareStatement(query)) {
+            stmt.setString(1, table);
+            ResultSet rs = stmt.executeQuery();
+            return rs.next();
+        }
+    }
+    
+    @Override
+    public Optional<Map<String, Long>> load(Connection conn, UUID playerId) throws SQLException {
+        String query = "SELECT record FROM atom_player_records WHERE player_key = ?";
+        try (PreparedStatement stmt = conn.prepareStatement(query)) {
+            stmt.setBytes(1, playerKey(playerId));
+            ResultSet rs = stmt.executeQuery();
+            
+            if (!rs.next()) {
+                return Optional.empty();
+            }
+            return Optional.of(decode(conn, rs.getBytes("record")));
+        }
+    }
+    
+    @Override
+    public void loadBatch(Connection conn, List<UUID> playerIds,
+                          BiConsumer<UUID, Map<String, Long>> consumer) throws SQLException {
+        String query = "SELECT player_key, record FROM atom_player_records WHERE player_key IN ("
+            + String.join(", ", Collections.nCopies(playerIds.size(), "?")) + ")";
+        try (PreparedStatement stmt = conn.prepareStatement(query)) {
+            for (int i = 0; i < playerIds.size(); i++) {
+                stmt.setBytes(i + 1, playerKey(playerIds.get(i)));
+            }
+            readRecords(conn, stmt.executeQuery(), consumer);
+        }
+    }
+    
+    @Override
+    public List<StoredRecord> readPage(Connection conn, UUID after, int limit) throws SQLException {
+        String query = "SELECT player_key, last_modified, record FROM atom_player_records "
+            + "WHERE player_key > ? ORDER BY player_key LIMIT ?";
+        List<StoredRecord> page = new ArrayList<>(limit);
+        try (PreparedStatement stmt = conn.prepareStatement(query)) {
+            stmt.setBytes(1, after != null ? playerKey(after) : new byte[0]);
+            stmt.setInt(2, limit);
+            ResultSet rs = stmt.executeQuery();
+            while (rs.next()) {
+                ByteBuffer key = ByteBuffer.wrap(rs.getBytes("player_key"));
+                page.add(new StoredRecord(new UUID(key.getLong(), key.getLong()), rs.getLong("last_modified"),
+                    decode(conn, rs.getBytes("record"))));
+            }
+        }
+        return page;
+    }
+    
+    @Override
+    public void importRecords(Connection conn, List<StoredRecord> records) throws SQLException {
+        String upsertRecord = """
+            INSERT INTO atom_player_records (player_key, last_modified, record)
+            VALUES (?, ?, ?)
+            ON CONFLICT(player_key) DO UPDATE SET last_modified = excluded.last_modified, record = excluded.record
+        """;
+        
+        try (PreparedStatement insertDictionary = prepareDictionaryInsert(conn);
+             PreparedStatement insertRecord = conn.prepareStatement(upsertRecord)) {
+            for (StoredRecord record : records) {
+                addRecord(insertRecord, insertDictionary, record.playerId(), record.lastModified(), record.skills());
+            }
+            insertRecord.executeBatch();
+        }
+    }
+    
+    void forEachRecord(Connection conn, RecordConsumer consumer) throws SQLException {
+        String query = "SELECT player_key, last_modified, record FROM atom_player_records";
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(query)) {
+            while (rs.next()) {
+                ByteBuffer key = ByteBuffer.wrap(rs.getBytes("player_key"));
+                consumer.accept(new UUID(key.getLong(), key.getLong()), rs.getLong("last_modified"),
+                    decode(conn, rs.getBytes("record")));
+            }
+        }
+    }
+    
+    private void readRecords(Connection conn, ResultSet rs,
+                             BiConsumer<UUID, Map<String, Long>> consumer) throws SQLException {
+        while (rs.next()) {
+            ByteBuffer key = ByteBuffer.wrap(rs.getBytes("player_key"));
+            consumer.accept(new UUID(key.getLong(), key.getLong()), decode(conn, rs.getBytes("record")));
+        }
+    }
+    
+    @Override
+    public boolean exists(Connection conn, UUID playerId) throws SQLException {
+        String query = "SELECT 1 FROM atom_player_records WHERE player_key = ? LIMIT 1";
+        try (PreparedStatement stmt = conn.prepareStatement(query)) {
+            stmt.setBytes(1, playerKey(playerId));
+            ResultSet rs = stmt.executeQuery();
+            return rs.next();
+        }
+    }
+    
+    @Override
+    public void write(Connection conn, List<PlayerSkillData> batch,
+                      List<PlayerSkillData.SkillDelta> deltas) throws SQLException {
+        String upsertRecord = """
+            INSERT INTO atom_player_records (player_key, last_modified, record)
+            VALUES (?, ?, ?)
+            ON CONFLICT(player_key) DO UPDATE SET last_modified = excluded.last_modified, record = excluded.record
+        """;
+        
+        try (PreparedStatement insertDictionary = prepareDictionaryInsert(conn);
+             PreparedStatement insertRecord = conn.prepareStatement(upsertRecord)) {
+            for (PlayerSkillData playerData : batch) {
+                addRecord(insertRecord, insertDictionary, playerData.playerId(), playerData.lastModified(),
+                    playerData.getAllIntrinsicXp());
+            }
+            insertRecord.executeBatch();
+        }
+    }
+    
+    @Override
+    public void delete(Connection conn, UUID playerId) throws SQLException {
+        String deleteQuery = "DELETE FROM atom_player_records WHERE player_key = ?";
+        try (PreparedStatement stmt = conn.prepareStatement(deleteQuery)) {
+            stmt.setBytes(1, playerKey(playerId));
+            stmt.executeUpdate();
+        }
+    }
+    
+    @Override
+    public void afterCommit() {
+        for (Map.Entry<String, Integer> entry : uncommittedIds.entrySet()) {
+            dictionaryIds.put(entry.getKey(), entry.getValue());
+            dictionaryNames.put(entry.getValue(), entry.getKey());
+        }
+        uncommittedIds.clear();
+        committedNextOrdinal = nextOrdinal;
+    }
+    
+    @Override
+    public void afterRollback() {
+        uncommittedIds.clear();
+        nextOrdinal = committedNextOrdinal;
+    }
+    
+    private static PreparedStatement prepareDictionaryInsert(Connection conn) throws SQLException {
+        return conn.prepareStatement("INSERT INTO atom_skill_dictionary (skill_ordinal, skill_id) VALUES (?, ?)");
+    }
+    
+    private void addRecord(PreparedStatement insertRecord, PreparedStatement insertDictionary, UUID playerId,
+                           long lastModified, Map<String, Long> skills) throws SQLException {
+        insertRecord.setBytes(1, playerKey(playerId));
+        insertRecord.setLong(2, lastModified);
+        insertRecord.setBytes(3, encode(insertDictionary, skills));
+        insertRecord.addBatch();
+    }
+    
+    private byte[] encode(PreparedStatement insertDictionary, Map<String, Long> skills) throws SQLException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(8 + skills.size() * 4);
+        writeVarint(out, RECORD_VERSION);
+        writeVarint(out, skills.size());
+        for (Map.Entry<String, Long> entry : skills.entrySet()) {
+            writeVarint(out, dictionaryOrdinal(insertDictionary, entry.getKey()));
+            writeVarint(out, entry.getValue());
+        }
+        return out.toByteArray();
+    }
+    
+    private Map<String, Long> decode(Connection conn, byte[] record) throws SQLException {
+        ByteBuffer in = ByteBuffer.wrap(record);
+        long version = readVarint(in);
+        if (version != RECORD_VERSION) {
+            throw new SQLException("Unsupported player record version: " + version);
+        }
+        
+        int count = (int) readVarint(in);
+        Map<String, Long> skills = new HashMap<>(count * 2);
+        for (int i = 0; i < count; i++) {
+            int ordinal = (int) readVarint(in);
+            skills.put(skillId(conn, ordinal), readVarint(in));
+        }
+        return skills;
+    }
+    
+    private int dictionaryOrdinal(PreparedStatement insertDictionary, String skillId) throws SQLException {
+        Integer ordinal = dictionaryIds.get(skillId);
+        if (ordinal == null) {
+            ordinal = uncommittedIds.get(skillId);
+        }
+        if (ordinal == null) {
+            ordinal = nextOrdinal++;
+            insertDictionary.setInt(1, ordinal);
+            insertDictionary.setString(2, skillId);
+            insertDictionary.executeUpdate();
+            uncommittedIds.put(skillId, ordinal);
+        }
+        return ordinal;
+    }
+    
+    private String skillId(Connection conn, int ordinal) throws SQLException {
+        String skillId = dictionaryNames.get(ordinal);
+        if (skillId != null) {
+            return skillId;
+        }
+        
+        String query = "SELECT skill_id FROM atom_skill_dictionary WHERE skill_ordinal = ?";
+        try (PreparedStatement stmt = conn.prepareStatement(query)) {
+            stmt.setInt(1, ordinal);
+            ResultSet rs = stmt.executeQuery();
+            if (!rs.next()) {
+                throw new SQLException("Unknown skill dictionary ordinal: " + ordinal);
+            }
+            skillId = rs.getString("skill_id");
+        }
+        dictionaryNames.put(ordinal, skillId);
+        return skillId;
+    }
+    
+    private static byte[] playerKey(UUID playerId) {
+        return ByteBuffer.allocate(16)
+            .putLong(playerId.getMostSignificantBits())
+            .putLong(playerId.getLeastSignificantBits())
+            .array();
+    }
+    
+    private static void writeVarint(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+    
+    private static long readVarint(ByteBuffer in) throws SQLException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            if (!in.hasRemaining()) {
+                throw new SQLException("Truncated player record");
+            }
+            byte b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new SQLException("Malformed varint in player record");
+    }
+    
+    @FunctionalInterface
+    interface RecordConsumer {
+        void accept(UUID playerId, long lastModified, Map<String, Long> skills) throws SQLException;
+    }
+}
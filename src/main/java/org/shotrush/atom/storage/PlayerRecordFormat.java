@@ -0,0 +1,38 @@
+package org.shotrush.atom.storage;
+
+import org.shotrush.atom.model.PlayerSkillData;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.BiConsumer;
+
+interface PlayerRecordFormat {
+    
+    void createTables(Connection conn) throws SQLException;
+    
+    Optional<Map<String, Long>> load(Connection conn, UUID playerId) throws SQLException;
+    
+    void loadBatch(Connection conn, List<UUID> playerIds, BiConsumer<UUID, Map<String, Long>> consumer) throws SQLException;
+    
+    List<StoredRecord> readPage(Connection conn, UUID after, int limit) throws SQLException;
+    
+    void importRecords(Connection conn, List<StoredRecord> records) throws SQLException;
+    
+    boolean exists(Connection conn, UUID playerId) throws SQLException;
+    
+    void write(Connection conn, List<PlayerSkillData> batch, List<PlayerSkillData.SkillDelta> deltas) throws SQLException;
+    
+    void delete(Connection conn, UUID playerId) throws SQLException;
+    
+    default void afterCommit() {
+    }
+    
+    default void afterRollback() {
+    }
+    
+    record StoredRecord(UUID playerId, long lastModified, Map<String, Long> skills) {}
+}
@@ -0,0 +1,318 @@
+package org.shotrush.atom.storage;
+
+import org.shotrush.atom.model.PlayerSkillData;
+import org.shotrush.atom.model.SkillKeyspace;
+
+import java.sql.*;
+import java.util.*;
+import java.util.function.BiConsumer;
+
+final class RowRecordFormat implements PlayerRecordFormat {
+    
+    @Override
+    public void createTables(Connection conn) throws SQLException {
+        String createPlayersTable = """
+            CREATE TABLE IF NOT EXISTS atom_players (
+                player_id TEXT PRIMARY KEY,
+                last_modified INTEGER NOT NULL
+            )
+        """;
+        
+        String createSkillsTable = """
+            CREATE TABLE IF NOT EXISTS atom_skills (
+                player_id TEXT NOT NULL,
+                skill_id TEXT NOT NULL,
+                intrinsic_xp INTEGER NOT NULL,
+                PRIMARY KEY (player_id, skill_id),
+                FOREIGN KEY (player_id) REFERENCES atom_players(player_id) ON DELETE CASCADE
+            )
+        """;
+        
+        String createIndexes = """
+            CREATE INDEX IF NOT EXISTS idx_player_modified ON atom_players(last_modified);
+            CREATE INDEX IF NOT EXISTS idx_skill_lookup ON atom_skills(player_id, skill_id);
+        """;
+        
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute(createPlayersTable);
+            stmt.execute(createSkillsTable);
+            stmt.execute(createIndexes);
+        }
+        
+        migratePacked(conn);
+    }
+    
+    private void migratePacked(Connection conn) throws SQLException {
+        if (!PackedRecordFormat.tableExists(conn, "atom_player_records")) {
+            return;
+        }
+        
+        String selectModified = "SELECT last_modified FROM atom_players WHERE player_id = ?";
+        String upsertPlayer = """
+            INSERT INTO atom_players (player_id, last_modified)
+            VALUES (?, ?)
+            ON CONFLICT(player_id) DO UPDATE SET last_modified = excluded.last_modified
+        """;
+        String deleteSkills = "DELETE FROM atom_skills WHERE player_id = ?";
+        String insertSkill = "INSERT INTO atom_skills (player_id, skill_id, intrinsic_xp) VALUES (?, ?, ?)";
+        
+        conn.setAutoCommit(false);
+        try (PreparedStatement modifiedStmt = conn.prepareStatement(selectModified);
+             PreparedStatement playerStmt = conn.prepareStatement(upsertPlayer);
+             PreparedStatement deleteStmt = conn.prepareStatement(deleteSkills);
+             PreparedStatement skillStmt = conn.prepareStatement(insertSkill);
+             Statement stmt = conn.createStatement()) {
+            int[] migrated = new int[1];
+            
+            new PackedRecordFormat().forEachRecord(conn, (playerId, lastModified, skills) -> {
+                String id = playerId.toString();
+                modifiedStmt.setString(1, id);
+                try (ResultSet rs = modifiedStmt.executeQuery()) {
+                    if (rs.next() && rs.getLong("last_modified") >= lastModified) {
+                        return;
+                    }
+                }
+                
+                playerStmt.setString(1, id);
+                playerStmt.setLong(2, lastModified);
+                playerStmt.executeUpdate();
+                deleteStmt.setString(1, id);
+                deleteStmt.executeUpdate();
+                for (Map.Entry<String, Long> entry : skills.entrySet()) {
+                    skillStmt.setString(1, id);
+                    skillStmt.setString(2, entry.getKey());
+                    skillStmt.setLong(3, entry.getValue());
+                    skillStmt.addBatch();
+                }
+                skillStmt.executeBatch();
+                migrated[0]++;
+            });
+            
+            PackedRecordFormat.retireTable(stmt, "atom_player_records");
+            conn.commit();
+            
+            System.out.println("[Storage] Migrated " + migrated[0] + " packed player records to rows; "
+                + "the packed table was kept as atom_player_records_legacy");
+        } catch (SQLException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(true);
+        }
+    }
+    
+    @Override
+    public Optional<Map<String, Long>> load(Connection conn, UUID playerId) throws SQLException {
+        if (!exists(conn, playerId)) {
+            return Optional.empty();
+        }
+        
+        String skillQuery = "SELECT skill_id, intrinsic_xp FROM atom_skills WHERE player_id = ?";
+        Map<String, Long> skills = new HashMap<>();
+        
+        try (PreparedStatement stmt = conn.prepareStatement(skillQuery)) {
+            stmt.setString(1, playerId.toString());
+            ResultSet rs = stmt.executeQuery();
+            
+            while (rs.next()) {
+                String skillId = rs.getString("skill_id");
+                long xp = rs.getLong("intrinsic_xp");
+                skills.put(skillId, xp);
+            }
+        }
+        
+        return Optional.of(skills);
+    }
+    
+    @Override
+    public void loadBatch(Connection conn, List<UUID> playerIds,
+                          BiConsumer<UUID, Map<String, Long>> consumer) throws SQLException {
+        String query = """
+            SELECT p.player_id, s.skill_id, s.intrinsic_xp
+            FROM atom_players p LEFT JOIN atom_skills s ON s.player_id = p.player_id
+            WHERE p.player_id IN (%s)
+            ORDER BY p.player_id
+        """.formatted(String.join(", ", Collections.nCopies(playerIds.size(), "?")));
+        
+        try (PreparedStatement stmt = conn.prepareStatement(query)) {
+            for (int i = 0; i < playerIds.size(); i++) {
+                stmt.setString(i + 1, playerIds.get(i).toString());
+            }
+            readGrouped(stmt.executeQuery(), consumer);
+        }
+    }
+    
+    @Override
+    public List<StoredRecord> readPage(Connection conn, UUID after, int limit) throws SQLException {
+        String query = """
+            SELECT p.player_id, p.last_modified, s.skill_id, s.intrinsic_xp
+            FROM (SELECT player_id, last_modified FROM atom_players
+                  WHERE player_id > ? ORDER BY player_id LIMIT ?) p
+            LEFT JOIN atom_skills s ON s.player_id = p.player_id
+            ORDER BY p.player_id
+        """;
+        
+        List<StoredRecord> page = new ArrayList<>(limit);
+        try (PreparedStatement stmt = conn.prepareStatement(query)) {
+            stmt.setString(1, after != null ? after.toString() : "");
+            stmt.setInt(2, limit);
+            ResultSet rs = stmt.executeQuery();
+            
+            String currentId = null;
+            long lastModified = 0L;
+            Map<String, Long> skills = null;
+            while (rs.next()) {
+                String playerId = rs.getString("player_id");
+                if (!playerId.equals(currentId)) {
+                    if (currentId != null) {
+                        page.add(new StoredRecord(UUID.fromString(currentId), lastModified, skills));
+                    }
+                    currentId = playerId;
+                    lastModified = rs.getLong("last_modified");
+                    skills = new HashMap<>();
+                }
+                String skillId = rs.getString("skill_id");
+                if (skillId != null) {
+                    skills.put(skillId, rs.getLong("intrinsic_xp"));
+                }
+            }
+            if (currentId != null) {
+                page.add(new StoredRecord(UUID.fromString(currentId), lastModified, skills));
+            }
+        }
+        return page;
+    }
+    
+    @Override
+    public void importRecords(Connection conn, List<StoredRecord> records) throws SQLException {
+        String upsertPlayer = """
+            INSERT INTO atom_players (player_id, last_modified)
+            VALUES (?, ?)
+            ON CONFLICT(player_id) DO UPDATE SET last_modified = excluded.last_modified
+        """;
+        String deleteSkills = "DELETE FROM atom_skills WHERE player_id = ?";
+        String insertSkill = "INSERT INTO atom_skills (player_id, skill_id, intrinsic_xp) VALUES (?, ?, ?)";
+        
+        try (PreparedStatement playerStmt = conn.prepareStatement(upsertPlayer);
+             PreparedStatement deleteStmt = conn.prepareStatement(deleteSkills);
+             PreparedStatement skillStmt = conn.prepareStatement(insertSkill)) {
+            for (StoredRecord record : records) {
+                String id = record.playerId().toString();
+                playerStmt.setString(1, id);
+                playerStmt.setLong(2, record.lastModified());
+                playerStmt.addBatch();
+                deleteStmt.setString(1, id);
+                deleteStmt.addBatch();
+                for (Map.Entry<String, Long> entry : record.skills().entrySet()) {
+                    skillStmt.setString(1, id);
+                    skillStmt.setString(2, entry.getKey());
+                    skillStmt.setLong(3, entry.getValue());
+                    skillStmt.addBatch();
+                }
+            }
+            
+            playerStmt.executeBatch();
+            deleteStmt.executeBatch();
+            skillStmt.executeBatch();
+        }
+    }
+    
+    private static void readGrouped(ResultSet rs, BiConsumer<UUID, Map<String, Long>> consumer) throws SQLException {
+        String currentId = null;
+        Map<String, Long> skills = null;
+        while (rs.next()) {
+            String playerId = rs.getString("player_id");
+            if (!playerId.equals(currentId)) {
+                if (currentId != null) {
+                    consumer.accept(UUID.fromString(currentId), skills);
+                }
+                currentId = playerId;
+                skills = new HashMap<>();
+            }
+            String skillId = rs.getString("skill_id");
+            if (skillId != null) {
+                skills.put(skillId, rs.getLong("intrinsic_xp"));
+            }
+        }
+        if (currentId != null) {
+            consumer.accept(UUID.fromString(currentId), skills);
+        }
+    }
+    
+    @Override
+    public boolean exists(Connection conn, UUID playerId) throws SQLException {
+        String query = "SELECT 1 FROM atom_players WHERE player_id = ? LIMIT 1";
+        try (PreparedStatement stmt = conn.prepareStatement(query)) {
+            stmt.setString(1, playerId.toString());
+            ResultSet rs = stmt.executeQuery();
+            return rs.next();
+        }
+    }
+    
+    @Override
+    public void write(Connection conn, List<PlayerSkillData> batch,
+                      List<PlayerSkillData.SkillDelta> deltas) throws SQLException {
+        String upsertPlayer = """
+            INSERT INTO atom_players (player_id, last_modified)
+            VALUES (?, ?)
+            ON CONFLICT(player_id) DO UPDATE SET last_modified = excluded.last_modified
+        """;
+        
+        String deleteSkill = "DELETE FROM atom_skills WHERE player_id = ? AND skill_id = ?";
+        
+        String upsertSkill = """
+            INSERT INTO atom_skills (player_id, skill_id, intrinsic_xp)
+            VALUES (?, ?, ?)
+            ON CONFLICT(player_id, skill_id) DO UPDATE SET intrinsic_xp = excluded.intrinsic_xp
+        """;
+        
+        try (PreparedStatement playerStmt = conn.prepareStatement(upsertPlayer);
+             PreparedStatement deleteStmt = conn.prepareStatement(deleteSkill);
+             PreparedStatement skillStmt = conn.prepareStatement(upsertSkill)) {
+            boolean hasDeletes = false;
+            boolean hasUpserts = false;
+            
+            for (int i = 0; i < batch.size(); i++) {
+                PlayerSkillData playerData = batch.get(i);
+                PlayerSkillData.SkillDelta delta = deltas.get(i);
+                String playerId = playerData.playerId().toString();
+                
+                playerStmt.setString(1, playerId);
+                playerStmt.setLong(2, playerData.lastModified());
+                playerStmt.addBatch();
+                
+                for (int key : delta.removedKeys()) {
+                    deleteStmt.setString(1, playerId);
+                    deleteStmt.setString(2, SkillKeyspace.id(key));
+                    deleteStmt.addBatch();
+                    hasDeletes = true;
+                }
+                
+                for (int j = 0; j < delta.updatedKeys().length; j++) {
+                    skillStmt.setString(1, playerId);
+                    skillStmt.setString(2, SkillKeyspace.id(delta.updatedKeys()[j]));
+                    skillStmt.setLong(3, delta.updatedXp()[j]);
+                    skillStmt.addBatch();
+                    hasUpserts = true;
+                }
+            }
+            
+            playerStmt.executeBatch();
+            if (hasDeletes) {
+                deleteStmt.executeBatch();
+            }
+            if (hasUpserts) {
+                skillStmt.executeBatch();
+            }
+        }
+    }
+    
+    @Override
+    public void delete(Connection conn, UUID playerId) throws SQLException {
+        String deleteQuery = "DELETE FROM atom_players WHERE player_id = ?";
+        try (PreparedStatement stmt = conn.prepareStatement(deleteQuery)) {
+            stmt.setString(1, playerId.toString());
+            stmt.executeUpdate();
+        }
+    }
+}
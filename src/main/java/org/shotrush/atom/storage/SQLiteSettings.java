@@ -0,0 +1,63 @@
+package org.shotrush.atom.storage;
+
+import java.util.Locale;
+import java.util.Objects;
+import java.util.Set;
+
+public record SQLiteSettings(
+    String synchronous,
+    long mmapSize,
+    int cacheSize,
+    String tempStore,
+    int readPoolSize,
+    RecordFormat format,
+    ExecutorMode executor
+) {
+    
+    private static final Set<String> SYNCHRONOUS_LEVELS = Set.of("OFF", "NORMAL", "FULL", "EXTRA");
+    private static final Set<String> TEMP_STORES = Set.of("DEFAULT", "FILE", "MEMORY");
+    
+    public SQLiteSettings {
+        Objects.requireNonNull(synchronous, "synchronous cannot be null");
+        Objects.requireNonNull(tempStore, "tempStore cannot be null");
+        Objects.requireNonNull(format, "format cannot be null");
+        Objects.requireNonNull(executor, "executor cannot be null");
+        synchronous = synchronous.toUpperCase(Locale.ROOT);
+        tempStore = tempStore.toUpperCase(Locale.ROOT);
+        
+        if (!SYNCHRONOUS_LEVELS.contains(synchronous)) {
+            throw new IllegalArgumentException("Unknown synchronous level: " + synchronous);
+        }
+        if (!TEMP_STORES.contains(tempStore)) {
+            throw new IllegalArgumentException("Unknown temp_store: " + tempStore);
+        }
+        if (mmapSize < 0) {
+            throw new IllegalArgumentException("mmapSize cannot be negative");
+        }
+        if (readPoolSize <= 0) {
+            throw new IllegalArgumentException("readPoolSize must be positive");
+        }
+    }
+    
+    public static SQLiteSettings defaults() {
+        return new SQLiteSettings("NORMAL", 268_435_456L, -16_000, "MEMORY", 2, RecordFormat.ROWS, ExecutorMode.PLATFORM);
+    }
+    
+    public enum RecordFormat {
+        ROWS,
+        PACKED;
+        
+        public static RecordFormat fromString(String value) {
+            return valueOf(value.toUpperCase(Locale.ROOT));
+        }
+    }
+    
+    public enum ExecutorMode {
+        PLATFORM,
+        VIRTUAL;
+        
+        public static ExecutorMode fromString(String value) {
+            return valueOf(value.toUpperCase(Locale.ROOT));
+        }
+    }
+}
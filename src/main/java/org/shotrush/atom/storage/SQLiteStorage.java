@@ -4,6 +4,7 @@ import com.zaxxer.hikari.HikariConfig;
 import com.zaxxer.hikari.HikariDataSource;
 import org.shotrush.atom.model.PlayerSkillData;
 
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.sql.*;
 import java.util.*;
@@ -11,85 +12,110 @@ import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 public final class SQLiteStorage implements StorageProvider {
     
+    private static final int LOAD_CHUNK_SIZE = 500;
+    
     private final Path databasePath;
-    private final ExecutorService executor;
-    private HikariDataSource dataSource;
+    private final SQLiteSettings settings;
+    private final PlayerRecordFormat format;
+    private final ExecutorService writeExecutor;
+    private final StorageExecutor readExecutor;
+    private Connection writeConnection;
+    private HikariDataSource readDataSource;
     
     public SQLiteStorage(Path databasePath) {
+        this(databasePath, SQLiteSettings.defaults());
+    }
+    
+    public SQLiteStorage(Path databasePath, SQLiteSettings settings) {
         this.databasePath = Objects.requireNonNull(databasePath, "databasePath cannot be null");
-        this.executor = Executors.newFixedThreadPool(2, r -> {
-            Thread thread = new Thread(r, "Atom-Storage");
+        this.settings = Objects.requireNonNull(settings, "settings cannot be null");
+        this.format = switch (settings.format()) {
+            case ROWS -> new RowRecordFormat();
+            case PACKED -> new PackedRecordFormat();
+        };
+        this.writeExecutor = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "Atom-Storage-Writer");
             thread.setDaemon(true);
             return thread;
         });
+        this.readExecutor = new StorageExecutor("Atom-Storage-Reader", settings.readPoolSize(), settings.executor());
     }
     
     @Override
     public CompletableFuture<Void> initialize() {
         return CompletableFuture.runAsync(() -> {
             try {
+                Files.createDirectories(databasePath.toAbsolutePath().getParent());
+                openWriteConnection();
+                format.createTables(writeConnection);
+                
                 HikariConfig config = new HikariConfig();
-                config.setJdbcUrl("jdbc:sqlite:" + databasePath.toAbsolutePath());
-                config.setMaximumPoolSize(2);
+                config.setPoolName("Atom-Readers");
+                config.setJdbcUrl(jdbcUrl());
+                config.setMaximumPoolSize(settings.readPoolSize());
                 config.setConnectionTimeout(5000);
                 config.setLeakDetectionThreshold(60000);
-                config.addDataSourceProperty("cachePrepStmts", "true");
-                config.addDataSourceProperty("prepStmtCacheSize", "250");
-                config.addDataSourceProperty("prepStmtCacheSqlLimit", "2048");
+                config.addDataSourceProperty("open_mode", "1");
+                config.addDataSourceProperty("cache_size", String.valueOf(settings.cacheSize()));
+                config.addDataSourceProperty("temp_store", settings.tempStore());
+                config.setConnectionInitSql("PRAGMA mmap_size = " + settings.mmapSize());
                 
-                dataSource = new HikariDataSource(config);
-                
-                createTables();
+                readDataSource = new HikariDataSource(config);
             } catch (Exception e) {
                 throw new StorageException("Failed to initialize database", e);
             }
-        }, executor);
+        }, writeExecutor);
     }
     
-    private void createTables() throws SQLException {
-        String createPlayersTable = """
-            CREATE TABLE IF NOT EXISTS atom_players (
-                player_id TEXT PRIMARY KEY,
-                last_modified INTEGER NOT NULL
-            )
-        """;
-        
-        String createSkillsTable = """
-            CREATE TABLE IF NOT EXISTS atom_skills (
-                player_id TEXT NOT NULL,
-                skill_id TEXT NOT NULL,
-                intrinsic_xp INTEGER NOT NULL,
-                PRIMARY KEY (player_id, skill_id),
-                FOREIGN KEY (player_id) REFERENCES atom_players(player_id) ON DELETE CASCADE
-            )
-        """;
-        
-        String createIndexes = """
-            CREATE INDEX IF NOT EXISTS idx_player_modified ON atom_players(last_modified);
-            CREATE INDEX IF NOT EXISTS idx_skill_lookup ON atom_skills(player_id, skill_id);
-        """;
-        
-        try (Connection conn = dataSource.getConnection();
-             Statement stmt = conn.createStatement()) {
-            stmt.execute(createPlayersTable);
-            stmt.execute(createSkillsTable);
-            stmt.execute(createIndexes);
+    @Override
+    public Optional<StorageMetrics> readMetrics() {
+        return Optional.of(readExecutor.metrics());
+    }
+    
+    private String jdbcUrl() {
+        return "jdbc:sqlite:" + databasePath.toAbsolutePath();
+    }
+    
+    private void openWriteConnection() throws SQLException {
+        writeConnection = DriverManager.getConnection(jdbcUrl());
+        try (Statement stmt = writeConnection.createStatement()) {
+            stmt.execute("PRAGMA journal_mode = WAL");
+            stmt.execute("PRAGMA synchronous = " + settings.synchronous());
+            stmt.execute("PRAGMA mmap_size = " + settings.mmapSize());
+            stmt.execute("PRAGMA cache_size = " + settings.cacheSize());
+            stmt.execute("PRAGMA temp_store = " + settings.tempStore());
+            stmt.execute("PRAGMA foreign_keys = ON");
+        }
+    }
+    
+    private Connection writeConnection() throws SQLException {
+        if (writeConnection == null || writeConnection.isClosed()) {
+            openWriteConnection();
         }
+        return writeConnection;
     }
     
     @Override
     public CompletableFuture<Void> shutdown() {
         return CompletableFuture.runAsync(() -> {
             try {
-                if (dataSource != null && !dataSource.isClosed()) {
-                    dataSource.close();
+                readExecutor.shutdown();
+                writeExecutor.shutdown();
+                if (!readExecutor.awaitTermination(10, TimeUnit.SECONDS)) {
+                    readExecutor.shutdownNow();
                 }
-                executor.shutdown();
-                if (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
-                    executor.shutdownNow();
+                if (!writeExecutor.awaitTermination(10, TimeUnit.SECONDS)) {
+                    writeExecutor.shutdownNow();
+                }
+                if (readDataSource != null && !readDataSource.isClosed()) {
+                    readDataSource.close();
+                }
+                if (writeConnection != null && !writeConnection.isClosed()) {
+                    writeConnection.close();
                 }
             } catch (Exception e) {
                 throw new StorageException("Failed to shutdown database", e);
@@ -100,118 +126,131 @@ public final class SQLiteStorage implements StorageProvider {
     @Override
     public CompletableFuture<Optional<PlayerSkillData>> loadPlayerData(UUID playerId) {
         return CompletableFuture.supplyAsync(() -> {
-            try (Connection conn = dataSource.getConnection()) {
-                String checkQuery = "SELECT last_modified FROM atom_players WHERE player_id = ?";
-                try (PreparedStatement stmt = conn.prepareStatement(checkQuery)) {
-                    stmt.setString(1, playerId.toString());
-                    ResultSet rs = stmt.executeQuery();
-                    
-                    if (!rs.next()) {
-                        return Optional.empty();
-                    }
+            try (Connection conn = readDataSource.getConnection()) {
+                return format.load(conn, playerId).map(skills -> new PlayerSkillData(playerId, skills));
+            } catch (SQLException e) {
+                throw new StorageException("Failed to load player data for " + playerId, e);
+            }
+        }, readExecutor);
+    }
+    
+    @Override
+    public CompletableFuture<Void> loadPlayerDataBatch(Collection<UUID> playerIds, Consumer<PlayerSkillData> consumer) {
+        List<UUID> ids = List.copyOf(new LinkedHashSet<>(playerIds));
+        List<CompletableFuture<Void>> chunks = new ArrayList<>();
+        
+        for (int start = 0; start < ids.size(); start += LOAD_CHUNK_SIZE) {
+            List<UUID> chunk = ids.subList(start, Math.min(start + LOAD_CHUNK_SIZE, ids.size()));
+            chunks.add(CompletableFuture.runAsync(() -> {
+                try (Connection conn = readDataSource.getConnection()) {
+                    format.loadBatch(conn, chunk, (playerId, skills) -> consumer.accept(new PlayerSkillData(playerId, skills)));
+                } catch (SQLException e) {
+                    throw new StorageException("Failed to load player data for " + chunk.size() + " players", e);
                 }
+            }, readExecutor));
+        }
+        
+        return CompletableFuture.allOf(chunks.toArray(new CompletableFuture[0]));
+    }
+    
+    CompletableFuture<List<PlayerRecordFormat.StoredRecord>> readPage(UUID after, int limit) {
+        return CompletableFuture.supplyAsync(() -> {
+            try (Connection conn = readDataSource.getConnection()) {
+                return format.readPage(conn, after, limit);
+            } catch (SQLException e) {
+                throw new StorageException("Failed to scan player data in " + databasePath.getFileName(), e);
+            }
+        }, readExecutor);
+    }
+    
+    CompletableFuture<Void> importRecords(List<PlayerRecordFormat.StoredRecord> records) {
+        return CompletableFuture.runAsync(() -> {
+            try {
+                Connection conn = writeConnection();
+                conn.setAutoCommit(false);
                 
-                String skillQuery = "SELECT skill_id, intrinsic_xp FROM atom_skills WHERE player_id = ?";
-                Map<String, Long> skills = new HashMap<>();
-                
-                try (PreparedStatement stmt = conn.prepareStatement(skillQuery)) {
-                    stmt.setString(1, playerId.toString());
-                    ResultSet rs = stmt.executeQuery();
-                    
-                    while (rs.next()) {
-                        String skillId = rs.getString("skill_id");
-                        long xp = rs.getLong("intrinsic_xp");
-                        skills.put(skillId, xp);
-                    }
+                try {
+                    format.importRecords(conn, records);
+                    conn.commit();
+                    format.afterCommit();
+                } catch (SQLException | RuntimeException e) {
+                    rollback(conn, e);
+                    throw e;
+                } finally {
+                    conn.setAutoCommit(true);
                 }
-                
-                return Optional.of(new PlayerSkillData(playerId, skills));
-            } catch (SQLException e) {
-                throw new StorageException("Failed to load player data for " + playerId, e);
+            } catch (SQLException | RuntimeException e) {
+                throw new StorageException("Failed to import " + records.size() + " player records", e);
             }
-        }, executor);
+        }, writeExecutor);
     }
     
     @Override
     public CompletableFuture<Void> savePlayerData(PlayerSkillData playerData) {
+        return savePlayerDataBatch(List.of(playerData));
+    }
+    
+    @Override
+    public CompletableFuture<Void> savePlayerDataBatch(Collection<PlayerSkillData> players) {
         return CompletableFuture.runAsync(() -> {
-            try (Connection conn = dataSource.getConnection()) {
+            List<PlayerSkillData> batch = List.copyOf(players);
+            List<PlayerSkillData.SkillDelta> deltas = new ArrayList<>(batch.size());
+            for (PlayerSkillData playerData : batch) {
+                deltas.add(playerData.drainDelta());
+            }
+            
+            try {
+                Connection conn = writeConnection();
                 conn.setAutoCommit(false);
                 
                 try {
-                    String upsertPlayer = """
-                        INSERT INTO atom_players (player_id, last_modified)
-                        VALUES (?, ?)
-                        ON CONFLICT(player_id) DO UPDATE SET last_modified = excluded.last_modified
-                    """;
-                    
-                    try (PreparedStatement stmt = conn.prepareStatement(upsertPlayer)) {
-                        stmt.setString(1, playerData.playerId().toString());
-                        stmt.setLong(2, playerData.lastModified());
-                        stmt.executeUpdate();
-                    }
-                    
-                    String deleteSkills = "DELETE FROM atom_skills WHERE player_id = ?";
-                    try (PreparedStatement stmt = conn.prepareStatement(deleteSkills)) {
-                        stmt.setString(1, playerData.playerId().toString());
-                        stmt.executeUpdate();
-                    }
-                    
-                    if (!playerData.getAllIntrinsicXp().isEmpty()) {
-                        String insertSkill = "INSERT INTO atom_skills (player_id, skill_id, intrinsic_xp) VALUES (?, ?, ?)";
-                        try (PreparedStatement stmt = conn.prepareStatement(insertSkill)) {
-                            for (Map.Entry<String, Long> entry : playerData.getAllIntrinsicXp().entrySet()) {
-                                stmt.setString(1, playerData.playerId().toString());
-                                stmt.setString(2, entry.getKey());
-                                stmt.setLong(3, entry.getValue());
-                                stmt.addBatch();
-                            }
-                            stmt.executeBatch();
-                        }
-                    }
-                    
+                    format.write(conn, batch, deltas);
                     conn.commit();
-                    playerData.markClean();
-                } catch (SQLException e) {
-                    conn.rollback();
+                    format.afterCommit();
+                } catch (SQLException | RuntimeException e) {
+                    rollback(conn, e);
                     throw e;
                 } finally {
                     conn.setAutoCommit(true);
                 }
-            } catch (SQLException e) {
-                throw new StorageException("Failed to save player data for " + playerData.playerId(), e);
+            } catch (SQLException | RuntimeException e) {
+                for (int i = 0; i < batch.size(); i++) {
+                    batch.get(i).restoreDelta(deltas.get(i));
+                }
+                throw new StorageException("Failed to save player data for " + batch.size() + " players", e);
             }
-        }, executor);
+        }, writeExecutor);
+    }
+    
+    private void rollback(Connection conn, Exception cause) {
+        try {
+            conn.rollback();
+        } catch (SQLException e) {
+            cause.addSuppressed(e);
+        } finally {
+            format.afterRollback();
+        }
     }
     
     @Override
     public CompletableFuture<Void> deletePlayerData(UUID playerId) {
         return CompletableFuture.runAsync(() -> {
-            try (Connection conn = dataSource.getConnection()) {
-                String deleteQuery = "DELETE FROM atom_players WHERE player_id = ?";
-                try (PreparedStatement stmt = conn.prepareStatement(deleteQuery)) {
-                    stmt.setString(1, playerId.toString());
-                    stmt.executeUpdate();
-                }
+            try {
+                format.delete(writeConnection(), playerId);
             } catch (SQLException e) {
                 throw new StorageException("Failed to delete player data for " + playerId, e);
             }
-        }, executor);
+        }, writeExecutor);
     }
     
     @Override
     public CompletableFuture<Boolean> playerDataExists(UUID playerId) {
         return CompletableFuture.supplyAsync(() -> {
-            try (Connection conn = dataSource.getConnection()) {
-                String query = "SELECT 1 FROM atom_players WHERE player_id = ? LIMIT 1";
-                try (PreparedStatement stmt = conn.prepareStatement(query)) {
-                    stmt.setString(1, playerId.toString());
-                    ResultSet rs = stmt.executeQuery();
-                    return rs.next();
-                }
+            try (Connection conn = readDataSource.getConnection()) {
+                return format.exists(conn, playerId);
             } catch (SQLException e) {
                 throw new StorageException("Failed to check player data existence for " + playerId, e);
             }
-        }, executor);
+        }, readExecutor);
     }
 }
@@ -0,0 +1,234 @@
+package org.shotrush.atom.storage;
+
+import org.shotrush.atom.model.PlayerSkillData;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+public final class ShardedSQLiteStorage implements StorageProvider {
+    
+    private static final String LAYOUT_FILE = "layout.properties";
+    private static final int MIGRATION_BATCH_SIZE = 512;
+    
+    private final Path directory;
+    private final Path legacyDatabase;
+    private final SQLiteSettings settings;
+    private final SQLiteStorage[] shards;
+    private final Logger logger;
+    
+    public ShardedSQLiteStorage(Path directory, Path legacyDatabase, int shardCount, SQLiteSettings settings,
+                                Logger logger) {
+        this.directory = Objects.requireNonNull(directory, "directory cannot be null");
+        this.legacyDatabase = Objects.requireNonNull(legacyDatabase, "legacyDatabase cannot be null");
+        this.settings = Objects.requireNonNull(settings, "settings cannot be null");
+        this.logger = Objects.requireNonNull(logger, "logger cannot be null");
+        if (shardCount <= 0) {
+            throw new IllegalArgumentException("Shard count must be positive");
+        }
+        this.shards = openShards(shardCount);
+    }
+    
+    public static boolean layoutExists(Path directory) {
+        return Files.exists(directory.resolve(LAYOUT_FILE));
+    }
+    
+    public int shardCount() {
+        return shards.length;
+    }
+    
+    @Override
+    public CompletableFuture<Void> initialize() {
+        return CompletableFuture.allOf(Arrays.stream(shards)
+                .map(SQLiteStorage::initialize)
+                .toArray(CompletableFuture[]::new))
+            .thenRun(this::reshardIfNeeded);
+    }
+    
+    private SQLiteStorage[] openShards(int count) {
+        Path shardDirectory = directory.resolve(String.valueOf(count));
+        SQLiteStorage[] storages = new SQLiteStorage[count];
+        for (int i = 0; i < count; i++) {
+            storages[i] = new SQLiteStorage(shardDirectory.resolve("shard-" + i + ".db"), settings);
+        }
+        return storages;
+    }
+    
+    private void reshardIfNeeded() {
+        try {
+            int previous = readLayout();
+            if (previous == shards.length) {
+                return;
+            }
+            
+            if (previous > 0) {
+                int migrated = 0;
+                for (SQLiteStorage source : openShards(previous)) {
+                    migrated += migrateFrom(source);
+                }
+                writeLayout();
+                deleteRecursively(directory.resolve(String.valueOf(previous)));
+                logger.info("Resharded " + migrated + " players from " + previous + " to " + shards.length + " shards");
+            } else if (Files.exists(legacyDatabase)) {
+                int migrated = migrateFrom(new SQLiteStorage(legacyDatabase, settings));
+                writeLayout();
+                Files.move(legacyDatabase, legacyDatabase.resolveSibling(legacyDatabase.getFileName() + ".migrated"),
+                    StandardCopyOption.REPLACE_EXISTING);
+                logger.info("Moved " + migrated + " players from " + legacyDatabase.getFileName()
+                    + " into " + shards.length + " shards");
+            } else {
+                writeLayout();
+            }
+        } catch (IOException e) {
+            throw new StorageException("Failed to reshard player data in " + directory, e);
+        }
+    }
+    
+    private int migrateFrom(SQLiteStorage source) {
+        source.initialize().join();
+        try {
+            int migrated = 0;
+            UUID after = null;
+            while (true) {
+                List<PlayerRecordFormat.StoredRecord> page = source.readPage(after, MIGRATION_BATCH_SIZE).join();
+                if (page.isEmpty()) {
+                    return migrated;
+                }
+                
+                Map<SQLiteStorage, List<PlayerRecordFormat.StoredRecord>> grouped = new IdentityHashMap<>();
+                for (PlayerRecordFormat.StoredRecord record : page) {
+                    grouped.computeIfAbsent(shard(record.playerId()), shard -> new ArrayList<>()).add(record);
+                }
+                CompletableFuture.allOf(grouped.entrySet().stream()
+                        .map(entry -> entry.getKey().importRecords(entry.getValue()))
+                        .toArray(CompletableFuture[]::new))
+                    .join();
+                
+                migrated += page.size();
+                after = page.get(page.size() - 1).playerId();
+            }
+        } finally {
+            source.shutdown().join();
+        }
+    }
+    
+    private int readLayout() throws IOException {
+        Path layout = directory.resolve(LAYOUT_FILE);
+        if (!Files.exists(layout)) {
+            return -1;
+        }
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(layout)) {
+            properties.load(reader);
+        }
+        return Integer.parseInt(properties.getProperty("shards", "-1"));
+    }
+    
+    private void writeLayout() throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty("shards", String.valueOf(shards.length));
+        Path temp = directory.resolve(LAYOUT_FILE + ".tmp");
+        try (Writer writer = Files.newBufferedWriter(temp)) {
+            properties.store(writer, "Atom shard layout; change storage.shards to reshard on the next start");
+        }
+        Files.move(temp, directory.resolve(LAYOUT_FILE), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+    
+    private static void deleteRecursively(Path root) throws IOException {
+        if (!Files.exists(root)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(root)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(path);
+            }
+        }
+    }
+    
+    private SQLiteStorage shard(UUID playerId) {
+        long hash = playerId.getMostSignificantBits() ^ playerId.getLeastSignificantBits();
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        return shards[(int) Math.floorMod(hash, (long) shards.length)];
+    }
+    
+    private Map<SQLiteStorage, List<UUID>> groupIds(Collection<UUID> playerIds) {
+        Map<SQLiteStorage, List<UUID>> grouped = new IdentityHashMap<>();
+        for (UUID playerId : playerIds) {
+            grouped.computeIfAbsent(shard(playerId), shard -> new ArrayList<>()).add(playerId);
+        }
+        return grouped;
+    }
+    
+    @Override
+    public CompletableFuture<Void> shutdown() {
+        return CompletableFuture.allOf(Arrays.stream(shards)
+            .map(SQLiteStorage::shutdown)
+            .toArray(CompletableFuture[]::new));
+    }
+    
+    @Override
+    public CompletableFuture<Optional<PlayerSkillData>> loadPlayerData(UUID playerId) {
+        return shard(playerId).loadPlayerData(playerId);
+    }
+    
+    @Override
+    public CompletableFuture<Void> loadPlayerDataBatch(Collection<UUID> playerIds, Consumer<PlayerSkillData> consumer) {
+        return CompletableFuture.allOf(groupIds(playerIds).entrySet().stream()
+            .map(entry -> entry.getKey().loadPlayerDataBatch(entry.getValue(), consumer))
+            .toArray(CompletableFuture[]::new));
+    }
+    
+    @Override
+    public CompletableFuture<Void> savePlayerData(PlayerSkillData playerData) {
+        return shard(playerData.playerId()).savePlayerData(playerData);
+    }
+    
+    @Override
+    public CompletableFuture<Void> savePlayerDataBatch(Collection<PlayerSkillData> players) {
+        Map<SQLiteStorage, List<PlayerSkillData>> grouped = new IdentityHashMap<>();
+        for (PlayerSkillData playerData : players) {
+            grouped.computeIfAbsent(shard(playerData.playerId()), shard -> new ArrayList<>()).add(playerData);
+        }
+        return CompletableFuture.allOf(grouped.entrySet().stream()
+            .map(entry -> entry.getKey().savePlayerDataBatch(entry.getValue()))
+            .toArray(CompletableFuture[]::new));
+    }
+    
+    @Override
+    public CompletableFuture<Void> deletePlayerData(UUID playerId) {
+        return shard(playerId).deletePlayerData(playerId);
+    }
+    
+    @Override
+    public CompletableFuture<Boolean> playerDataExists(UUID playerId) {
+        return shard(playerId).playerDataExists(playerId);
+    }
+    
+    @Override
+    public Optional<StorageMetrics> readMetrics() {
+        int queued = 0;
+        int active = 0;
+        long completed = 0;
+        double totalWait = 0.0;
+        double maxWait = 0.0;
+        for (SQLiteStorage shard : shards) {
+            StorageMetrics metrics = shard.readMetrics().orElseThrow();
+            queued += metrics.queued();
+            active += metrics.active();
+            completed += metrics.completed();
+            totalWait += metrics.averageWaitMillis() * metrics.completed();
+            maxWait = Math.max(maxWait, metrics.maxWaitMillis());
+        }
+        return Optional.of(new StorageMetrics(queued, active, completed, completed > 0 ? totalWait / completed : 0.0, maxWait));
+    }
+}
@@ -0,0 +1,85 @@
+package org.shotrush.atom.storage;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+final class StorageExecutor implements Executor {
+    
+    private final ExecutorService delegate;
+    private final Semaphore permits;
+    private final AtomicInteger queued;
+    private final AtomicInteger active;
+    private final LongAdder completed;
+    private final LongAdder totalWaitNanos;
+    private final AtomicLong maxWaitNanos;
+    
+    StorageExecutor(String name, int concurrency, SQLiteSettings.ExecutorMode mode) {
+        this.delegate = switch (mode) {
+            case PLATFORM -> Executors.newFixedThreadPool(concurrency, r -> {
+                Thread thread = new Thread(r, name);
+                thread.setDaemon(true);
+                return thread;
+            });
+            case VIRTUAL -> Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(name + "-", 0).factory());
+        };
+        this.permits = mode == SQLiteSettings.ExecutorMode.VIRTUAL ? new Semaphore(concurrency, true) : null;
+        this.queued = new AtomicInteger();
+        this.active = new AtomicInteger();
+        this.completed = new LongAdder();
+        this.totalWaitNanos = new LongAdder();
+        this.maxWaitNanos = new AtomicLong();
+    }
+    
+    @Override
+    public void execute(Runnable task) {
+        long submitted = System.nanoTime();
+        queued.incrementAndGet();
+        try {
+            delegate.execute(() -> run(task, submitted));
+        } catch (RejectedExecutionException e) {
+            queued.decrementAndGet();
+            throw e;
+        }
+    }
+    
+    private void run(Runnable task, long submitted) {
+        if (permits != null) {
+            permits.acquireUninterruptibly();
+        }
+        long waited = System.nanoTime() - submitted;
+        queued.decrementAndGet();
+        active.incrementAndGet();
+        totalWaitNanos.add(waited);
+        maxWaitNanos.accumulateAndGet(waited, Math::max);
+        
+        try {
+            task.run();
+        } finally {
+            active.decrementAndGet();
+            completed.increment();
+            if (permits != null) {
+                permits.release();
+            }
+        }
+    }
+    
+    StorageMetrics metrics() {
+        long done = completed.sum();
+        double averageWait = done > 0 ? totalWaitNanos.sum() / (double) done / 1_000_000.0 : 0.0;
+        return new StorageMetrics(queued.get(), active.get(), done, averageWait, maxWaitNanos.get() / 1_000_000.0);
+    }
+    
+    void shutdown() {
+        delegate.shutdown();
+    }
+    
+    boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return delegate.awaitTermination(timeout, unit);
+    }
+    
+    void shutdownNow() {
+        delegate.shutdownNow();
+    }
+}
@@ -0,0 +1,10 @@
+package org.shotrush.atom.storage;
+
+public record StorageMetrics(
+    int queued,
+    int active,
+    long completed,
+    double averageWaitMillis,
+    double maxWaitMillis
+) {
+}
@@ -2,9 +2,13 @@ package org.shotrush.atom.storage;
 
 import org.shotrush.atom.model.PlayerSkillData;
 
+import java.util.Collection;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
 
 public interface StorageProvider {
     
@@ -14,9 +18,31 @@ public interface StorageProvider {
     
     CompletableFuture<Optional<PlayerSkillData>> loadPlayerData(UUID playerId);
     
+    default CompletableFuture<Void> loadPlayerDataBatch(Collection<UUID> playerIds, Consumer<PlayerSkillData> consumer) {
+        return CompletableFuture.allOf(playerIds.stream()
+            .map(playerId -> loadPlayerData(playerId).thenAccept(data -> data.ifPresent(consumer)))
+            .toArray(CompletableFuture[]::new));
+    }
+    
+    default CompletableFuture<Map<UUID, PlayerSkillData>> loadPlayerDataBatch(Collection<UUID> playerIds) {
+        Map<UUID, PlayerSkillData> loaded = new ConcurrentHashMap<>();
+        return loadPlayerDataBatch(playerIds, data -> loaded.put(data.playerId(), data))
+            .thenApply(ignored -> loaded);
+    }
+    
     CompletableFuture<Void> savePlayerData(PlayerSkillData playerData);
     
+    default CompletableFuture<Void> savePlayerDataBatch(Collection<PlayerSkillData> players) {
+        return CompletableFuture.allOf(players.stream()
+            .map(this::savePlayerData)
+            .toArray(CompletableFuture[]::new));
+    }
+    
     CompletableFuture<Void> deletePlayerData(UUID playerId);
     
     CompletableFuture<Boolean> playerDataExists(UUID playerId);
+    
+    default Optional<StorageMetrics> readMetrics() {
+        return Optional.empty();
+    }
 }
@@ -0,0 +1,193 @@
+package org.shotrush.atom.storage;
+
+import org.shotrush.atom.model.PlayerSkillData;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+public final class WriteBehindQueue {
+    
+    private static final long MAX_RETRY_DELAY_MILLIS = 300_000L;
+    
+    private final StorageProvider storage;
+    private final int batchSize;
+    private final long flushIntervalMillis;
+    private final ScheduledExecutorService writer;
+    private final Map<UUID, PendingWrite> pending;
+    private final Map<UUID, PendingWrite> inFlight;
+    private final Map<UUID, Retry> retries;
+    private final AtomicLong failedBatches;
+    
+    public WriteBehindQueue(StorageProvider storage, int batchSize, long flushIntervalMillis) {
+        this.storage = Objects.requireNonNull(storage, "storage cannot be null");
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Batch size must be positive");
+        }
+        if (flushIntervalMillis <= 0) {
+            throw new IllegalArgumentException("Flush interval must be positive");
+        }
+        this.batchSize = batchSize;
+        this.flushIntervalMillis = flushIntervalMillis;
+        this.pending = new LinkedHashMap<>();
+        this.inFlight = new HashMap<>();
+        this.retries = new HashMap<>();
+        this.failedBatches = new AtomicLong();
+        this.writer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "Atom-WriteBehind");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.writer.scheduleWithFixedDelay(() -> drain(false), flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+    
+    public synchronized CompletableFuture<Void> enqueue(PlayerSkillData data) {
+        Objects.requireNonNull(data, "data cannot be null");
+        
+        PendingWrite write = pending.computeIfAbsent(data.playerId(), id -> new PendingWrite());
+        write.data = data;
+        Retry retry = retries.remove(data.playerId());
+        if (retry != null) {
+            write.attempts = retry.attempts();
+        }
+        return write.future;
+    }
+    
+    public synchronized Optional<PlayerSkillData> pendingData(UUID playerId) {
+        PendingWrite write = pending.get(playerId);
+        if (write == null) {
+            write = inFlight.get(playerId);
+        }
+        if (write != null) {
+            return Optional.of(write.data);
+        }
+        Retry retry = retries.get(playerId);
+        return retry != null ? Optional.of(retry.data()) : Optional.empty();
+    }
+    
+    public synchronized int pendingCount() {
+        return pending.size() + retries.size();
+    }
+    
+    public long failedBatches() {
+        return failedBatches.get();
+    }
+    
+    public CompletableFuture<Void> flush() {
+        return CompletableFuture.runAsync(() -> drain(true), writer);
+    }
+    
+    public void close() {
+        try {
+            flush().join();
+        } finally {
+            writer.shutdown();
+            try {
+                if (!writer.awaitTermination(10, TimeUnit.SECONDS)) {
+                    writer.shutdownNow();
+                }
+            } catch (InterruptedException e) {
+                writer.shutdownNow();
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+    
+    private void drain(boolean includeRetries) {
+        requeueRetries(includeRetries);
+        List<PendingWrite> batch;
+        while (!(batch = takeBatch()).isEmpty()) {
+            write(batch);
+        }
+    }
+    
+    private synchronized void requeueRetries(boolean all) {
+        long now = System.currentTimeMillis();
+        Iterator<Map.Entry<UUID, Retry>> iterator = retries.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<UUID, Retry> entry = iterator.next();
+            Retry retry = entry.getValue();
+            if (all || retry.dueAt() <= now) {
+                iterator.remove();
+                PendingWrite write = pending.computeIfAbsent(entry.getKey(), id -> new PendingWrite());
+                if (write.data == null) {
+                    write.data = retry.data();
+                }
+                write.attempts = Math.max(write.attempts, retry.attempts());
+            }
+        }
+    }
+    
+    private synchronized List<PendingWrite> takeBatch() {
+        List<PendingWrite> batch = new ArrayList<>(Math.min(batchSize, pending.size()));
+        Iterator<Map.Entry<UUID, PendingWrite>> iterator = pending.entrySet().iterator();
+        while (iterator.hasNext() && batch.size() < batchSize) {
+            Map.Entry<UUID, PendingWrite> entry = iterator.next();
+            iterator.remove();
+            inFlight.put(entry.getKey(), entry.getValue());
+            batch.add(entry.getValue());
+        }
+        return batch;
+    }
+    
+    private void write(List<PendingWrite> batch) {
+        List<PlayerSkillData> players = new ArrayList<>(batch.size());
+        for (PendingWrite write : batch) {
+            players.add(write.data);
+        }
+        
+        try {
+            storage.savePlayerDataBatch(players).join();
+        } catch (Throwable t) {
+            if (batch.size() > 1) {
+                int middle = batch.size() / 2;
+                write(batch.subList(0, middle));
+                write(batch.subList(middle, batch.size()));
+            } else {
+                fail(batch.get(0), t);
+            }
+            return;
+        }
+        
+        synchronized (this) {
+            for (PendingWrite write : batch) {
+                inFlight.remove(write.data.playerId(), write);
+            }
+        }
+        for (PendingWrite write : batch) {
+            write.future.complete(null);
+        }
+    }
+    
+    private void fail(PendingWrite write, Throwable failure) {
+        failedBatches.incrementAndGet();
+        UUID playerId = write.data.playerId();
+        int attempts = write.attempts + 1;
+        long delay = Math.min(flushIntervalMillis << Math.min(attempts, 20), MAX_RETRY_DELAY_MILLIS);
+        System.out.println("[Storage] Write-behind save of " + playerId + " failed (attempt " + attempts
+            + "), retrying in " + delay + "ms: " + failure.getMessage());
+        
+        synchronized (this) {
+            inFlight.remove(playerId, write);
+            PendingWrite queued = pending.get(playerId);
+            if (queued != null) {
+                queued.attempts = Math.max(queued.attempts, attempts);
+            } else {
+                retries.put(playerId, new Retry(write.data, attempts, System.currentTimeMillis() + delay));
+            }
+        }
+        write.future.completeExceptionally(failure);
+    }
+    
+    private static final class PendingWrite {
+        private final CompletableFuture<Void> future = new CompletableFuture<>();
+        private PlayerSkillData data;
+        private int attempts;
+    }
+    
+    private record Retry(PlayerSkillData data, int attempts, long dueAt) {
+    }
+}
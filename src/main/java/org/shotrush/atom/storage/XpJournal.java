@@ -0,0 +1,519 @@
+package org.shotrush.atom.storage;
+
+import org.shotrush.atom.model.PlayerSkillData;
+import org.shotrush.atom.model.SkillKeyspace;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedTransferQueue;
+import java.util.concurrent.TimeUnit;
+
+public final class XpJournal implements PlayerSkillData.ChangeListener {
+    
+    private static final int MAGIC = 0x41584A31;
+    private static final int HEADER_SIZE = 12;
+    private static final byte END = 0;
+    private static final byte PLAYER = 1;
+    private static final byte SKILL = 2;
+    private static final byte SET = 3;
+    private static final byte REMOVE = 4;
+    private static final long REMOVED = -1L;
+    private static final int TAIL_GUARD = 65536;
+    private static final int BATCH_SIZE = 1024;
+    
+    private final Segment[] segments;
+    private final Map<UUID, Map<String, Long>> recovered;
+    private final LinkedTransferQueue<Change> changes;
+    private final long syncIntervalNanos;
+    private final ExecutorService writer;
+    private int active;
+    private int sealed;
+    private long nextSequence;
+    private boolean unsynced;
+    private volatile boolean failed;
+    private volatile boolean closed;
+    
+    private XpJournal(Segment[] segments, long syncIntervalMillis) {
+        this.segments = segments;
+        this.recovered = new HashMap<>();
+        this.changes = new LinkedTransferQueue<>();
+        this.syncIntervalNanos = TimeUnit.MILLISECONDS.toNanos(syncIntervalMillis);
+        this.sealed = -1;
+        
+        Segment[] ordered = segments.clone();
+        Arrays.sort(ordered, Comparator.comparingLong(segment -> segment.sequence));
+        for (Segment segment : ordered) {
+            if (segment.sequence >= 0) {
+                segment.scan(recovered);
+            }
+            nextSequence = Math.max(nextSequence, segment.sequence + 1);
+        }
+        for (Segment segment : segments) {
+            if (segment.sequence < 0) {
+                segment.reset(nextSequence++);
+            }
+        }
+        
+        boolean firstEmpty = segments[0].isEmpty();
+        boolean secondEmpty = segments[1].isEmpty();
+        if (firstEmpty == secondEmpty) {
+            active = segments[0].sequence > segments[1].sequence ? 0 : 1;
+            if (firstEmpty) {
+                active = 1 - active;
+            } else {
+                sealed = 1 - active;
+            }
+        } else {
+            active = firstEmpty ? 1 : 0;
+        }
+        
+        this.writer = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "Atom-Journal");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.writer.execute(this::run);
+    }
+    
+    public static XpJournal open(Path directory, int segmentSize, long syncIntervalMillis) {
+        Objects.requireNonNull(directory, "directory cannot be null");
+        if (segmentSize < 4096) {
+            throw new IllegalArgumentException("Segment size must be at least 4096 bytes");
+        }
+        if (syncIntervalMillis <= 0) {
+            throw new IllegalArgumentException("Sync interval must be positive");
+        }
+        
+        try {
+            Files.createDirectories(directory);
+            Segment first = Segment.open(directory.resolve("xp-journal-0.bin"), segmentSize);
+            Segment second = Segment.open(directory.resolve("xp-journal-1.bin"), segmentSize);
+            return new XpJournal(new Segment[] {first, second}, syncIntervalMillis);
+        } catch (IOException e) {
+            throw new StorageException("Failed to open XP journal in " + directory, e);
+        }
+    }
+    
+    public int replay(StorageProvider storage) {
+        Objects.requireNonNull(storage, "storage cannot be null");
+        
+        Map<UUID, Map<String, Long>> entries;
+        synchronized (this) {
+            if (recovered.isEmpty()) {
+                return 0;
+            }
+            entries = new HashMap<>(recovered);
+        }
+        
+        Map<UUID, PlayerSkillData> stored = storage.loadPlayerDataBatch(entries.keySet()).join();
+        List<PlayerSkillData> players = new ArrayList<>(entries.size());
+        for (Map.Entry<UUID, Map<String, Long>> entry : entries.entrySet()) {
+            UUID playerId = entry.getKey();
+            PlayerSkillData data = stored.computeIfAbsent(playerId, PlayerSkillData::new);
+            for (Map.Entry<String, Long> skill : entry.getValue().entrySet()) {
+                if (skill.getValue() == REMOVED) {
+                    data.removeIntrinsicXp(skill.getKey());
+                } else {
+                    data.setIntrinsicXp(skill.getKey(), skill.getValue());
+                }
+            }
+            if (data.isDirty()) {
+                players.add(data);
+            }
+        }
+        storage.savePlayerDataBatch(players).join();
+        
+        synchronized (this) {
+            recovered.clear();
+            segments[0].reset(nextSequence++);
+            segments[1].reset(nextSequence++);
+            active = 0;
+            sealed = -1;
+            unsynced = true;
+        }
+        sync();
+        return entries.size();
+    }
+    
+    @Override
+    public void xpChanged(UUID playerId, int ordinal, long xp) {
+        if (!closed && !failed) {
+            changes.offer(new Change(playerId, ordinal, xp));
+        }
+    }
+    
+    @Override
+    public void skillRemoved(UUID playerId, int ordinal) {
+        if (!closed && !failed) {
+            changes.offer(new Change(playerId, ordinal, REMOVED));
+        }
+    }
+    
+    private void run() {
+        List<Change> batch = new ArrayList<>(BATCH_SIZE);
+        long nextSync = System.nanoTime() + syncIntervalNanos;
+        try {
+            while (!closed) {
+                Change change = changes.poll(Math.max(0L, nextSync - System.nanoTime()), TimeUnit.NANOSECONDS);
+                if (change != null) {
+                    batch.add(change);
+                    changes.drainTo(batch, BATCH_SIZE - 1);
+                    append(batch);
+                    batch.clear();
+                }
+                if (System.nanoTime() - nextSync >= 0) {
+                    sync();
+                    nextSync = System.nanoTime() + syncIntervalNanos;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    private void drain() {
+        List<Change> batch = new ArrayList<>(BATCH_SIZE);
+        while (changes.drainTo(batch, BATCH_SIZE) > 0) {
+            append(batch);
+            batch.clear();
+        }
+    }
+    
+    private synchronized void append(List<Change> batch) {
+        if (failed) {
+            return;
+        }
+        try {
+            Segment segment = segments[active];
+            for (Change change : batch) {
+                int player = playerOrdinal(segment, change.playerId());
+                int skill = skillOrdinal(segment, change.ordinal());
+                if (change.xp() == REMOVED) {
+                    int start = segment.begin(15);
+                    segment.putVarint(player);
+                    segment.putVarint(skill);
+                    segment.commit(start, REMOVE);
+                } else {
+                    int start = segment.begin(25);
+                    segment.putVarint(player);
+                    segment.putVarint(skill);
+                    segment.putVarint(change.xp());
+                    segment.commit(start, SET);
+                }
+            }
+            unsynced = true;
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+    
+    public synchronized Checkpoint beginCheckpoint() {
+        if (!closed && sealed < 0) {
+            sealed = active;
+            active = 1 - active;
+            segments[active].reset(nextSequence++);
+        }
+        return new Checkpoint(sealed, sealed >= 0 ? segments[sealed].sequence : -1L);
+    }
+    
+    private void complete(Checkpoint checkpoint) {
+        Segment segment;
+        synchronized (this) {
+            if (closed || checkpoint.segment < 0 || sealed != checkpoint.segment
+                || segments[sealed].sequence != checkpoint.sequence) {
+                return;
+            }
+            segment = segments[sealed];
+            segment.invalidate();
+        }
+        
+        segment.clear();
+        
+        synchronized (this) {
+            if (!closed) {
+                segment.stamp(nextSequence++);
+            }
+            sealed = -1;
+            unsynced = true;
+        }
+    }
+    
+    public void close() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        }
+        writer.shutdownNow();
+        try {
+            writer.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        drain();
+        for (Segment segment : segments) {
+            segment.close();
+        }
+    }
+    
+    private void sync() {
+        MappedByteBuffer first;
+        MappedByteBuffer second;
+        synchronized (this) {
+            if (!unsynced || closed) {
+                return;
+            }
+            unsynced = false;
+            first = segments[0].buffer;
+            second = segments[1].buffer;
+        }
+        first.force();
+        second.force();
+    }
+    
+    private void fail(IOException e) {
+        failed = true;
+        System.out.println("[Journal] Failed to append to the XP journal, journaling disabled until restart: " + e.getMessage());
+    }
+    
+    private static int playerOrdinal(Segment segment, UUID playerId) throws IOException {
+        Integer ordinal = segment.players.get(playerId);
+        if (ordinal != null) {
+            return ordinal;
+        }
+        
+        int next = segment.players.size();
+        int start = segment.begin(21);
+        segment.putVarint(next);
+        segment.putLong(playerId.getMostSignificantBits());
+        segment.putLong(playerId.getLeastSignificantBits());
+        segment.commit(start, PLAYER);
+        segment.players.put(playerId, next);
+        return next;
+    }
+    
+    private static int skillOrdinal(Segment segment, int keyspaceOrdinal) throws IOException {
+        if (keyspaceOrdinal < segment.skills.length && segment.skills[keyspaceOrdinal] != 0) {
+            return segment.skills[keyspaceOrdinal] - 1;
+        }
+        
+        byte[] name = SkillKeyspace.id(keyspaceOrdinal).getBytes(StandardCharsets.UTF_8);
+        int next = segment.skillCount;
+        int start = segment.begin(10 + name.length);
+        segment.putVarint(next);
+        segment.putVarint(name.length);
+        segment.putBytes(name);
+        segment.commit(start, SKILL);
+        segment.mapSkill(keyspaceOrdinal, next);
+        return next;
+    }
+    
+    private record Change(UUID playerId, int ordinal, long xp) {
+    }
+    
+    public final class Checkpoint {
+        
+        private final int segment;
+        private final long sequence;
+        
+        private Checkpoint(int segment, long sequence) {
+            this.segment = segment;
+            this.sequence = sequence;
+        }
+        
+        public void complete() {
+            XpJournal.this.complete(this);
+        }
+    }
+    
+    private static final class Segment {
+        
+        private static final byte[] ZEROS = new byte[8192];
+        
+        private final Path path;
+        private final FileChannel channel;
+        private final Map<UUID, Integer> players;
+        private MappedByteBuffer buffer;
+        private int[] skills;
+        private int skillCount;
+        private int position;
+        private long sequence;
+        
+        private Segment(Path path, FileChannel channel, MappedByteBuffer buffer) {
+            this.path = path;
+            this.channel = channel;
+            this.buffer = buffer;
+            this.players = new HashMap<>();
+            this.skills = new int[Math.max(SkillKeyspace.size(), 64)];
+            this.position = HEADER_SIZE;
+            this.sequence = buffer.getInt(0) == MAGIC ? buffer.getLong(4) : -1L;
+        }
+        
+        static Segment open(Path path, int segmentSize) throws IOException {
+            FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            long capacity = Math.min(Math.max(segmentSize, channel.size()), Integer.MAX_VALUE);
+            return new Segment(path, channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity));
+        }
+        
+        void scan(Map<UUID, Map<String, Long>> recovered) {
+            ByteBuffer in = buffer.duplicate();
+            in.position(HEADER_SIZE);
+            List<UUID> playerIds = new ArrayList<>();
+            List<String> skillIds = new ArrayList<>();
+            
+            int start = HEADER_SIZE;
+            try {
+                while (in.hasRemaining()) {
+                    start = in.position();
+                    byte type = in.get();
+                    if (type == END) {
+                        zero(start, Math.min(buffer.capacity(), start + TAIL_GUARD));
+                        break;
+                    }
+                    switch (type) {
+                        case PLAYER -> {
+                            readVarint(in);
+                            UUID playerId = new UUID(in.getLong(), in.getLong());
+                            players.put(playerId, playerIds.size());
+                            playerIds.add(playerId);
+                        }
+                        case SKILL -> {
+                            readVarint(in);
+                            byte[] name = new byte[(int) readVarint(in)];
+                            in.get(name);
+                            String skillId = new String(name, StandardCharsets.UTF_8);
+                            mapSkill(SkillKeyspace.ordinal(skillId), skillIds.size());
+                            skillIds.add(skillId);
+                        }
+                        case SET -> {
+                            UUID playerId = playerIds.get((int) readVarint(in));
+                            String skillId = skillIds.get((int) readVarint(in));
+                            recovered.computeIfAbsent(playerId, id -> new HashMap<>()).put(skillId, readVarint(in));
+                        }
+                        case REMOVE -> {
+                            UUID playerId = playerIds.get((int) readVarint(in));
+                            String skillId = skillIds.get((int) readVarint(in));
+                            recovered.computeIfAbsent(playerId, id -> new HashMap<>()).put(skillId, REMOVED);
+                        }
+                        default -> throw new IllegalStateException("Unknown journal record type: " + type);
+                    }
+                    start = in.position();
+                }
+            } catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalStateException
+                     | NegativeArraySizeException e) {
+                System.out.println("[Journal] Ignoring torn tail of " + path.getFileName() + " at offset " + start);
+                zero(start, buffer.capacity());
+            }
+            position = start;
+        }
+        
+        int begin(int maxBytes) throws IOException {
+            long required = (long) position + maxBytes + 1;
+            if (required > buffer.capacity()) {
+                long capacity = Math.min(Math.max(required, buffer.capacity() * 2L), Integer.MAX_VALUE);
+                if (capacity < required) {
+                    throw new IOException("Journal segment " + path.getFileName() + " is full");
+                }
+                buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+            }
+            return position++;
+        }
+        
+        void commit(int start, byte type) {
+            buffer.put(start, type);
+        }
+        
+        void putVarint(long value) {
+            while ((value & ~0x7FL) != 0) {
+                buffer.put(position++, (byte) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            buffer.put(position++, (byte) value);
+        }
+        
+        void putLong(long value) {
+            buffer.putLong(position, value);
+            position += Long.BYTES;
+        }
+        
+        void putBytes(byte[] bytes) {
+            buffer.put(position, bytes);
+            position += bytes.length;
+        }
+        
+        void mapSkill(int keyspaceOrdinal, int journalOrdinal) {
+            if (keyspaceOrdinal >= skills.length) {
+                skills = Arrays.copyOf(skills, Math.max(keyspaceOrdinal + 1, skills.length * 2));
+            }
+            skills[keyspaceOrdinal] = journalOrdinal + 1;
+            skillCount = Math.max(skillCount, journalOrdinal + 1);
+        }
+        
+        boolean isEmpty() {
+            return position == HEADER_SIZE;
+        }
+        
+        void reset(long sequence) {
+            clear();
+            stamp(sequence);
+        }
+        
+        void invalidate() {
+            buffer.putInt(0, 0);
+            sequence = -1L;
+        }
+        
+        void clear() {
+            zero(HEADER_SIZE, position);
+        }
+        
+        void stamp(long sequence) {
+            buffer.putInt(0, MAGIC);
+            buffer.putLong(4, sequence);
+            this.sequence = sequence;
+            position = HEADER_SIZE;
+            players.clear();
+            Arrays.fill(skills, 0);
+            skillCount = 0;
+        }
+        
+        void close() {
+            try {
+                buffer.force();
+                channel.close();
+            } catch (IOException e) {
+                System.out.println("[Journal] Failed to close " + path.getFileName() + ": " + e.getMessage());
+            }
+        }
+        
+        private void zero(int from, int to) {
+            for (int offset = from; offset < to; offset += ZEROS.length) {
+                buffer.put(offset, ZEROS, 0, Math.min(ZEROS.length, to - offset));
+            }
+        }
+        
+        private static long readVarint(ByteBuffer in) {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                byte b = in.get();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IllegalStateException("Malformed varint in journal");
+        }
+    }
+}
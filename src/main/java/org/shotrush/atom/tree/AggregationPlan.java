@@ -0,0 +1,62 @@
+package org.shotrush.atom.tree;
+
+import java.util.List;
+
+public final class AggregationPlan {
+    
+    private final String skillId;
+    private final long generation;
+    private final NodeRef[] refs;
+    private final int[] treeSlots;
+    private final String[] treeNames;
+    private final double[] defaultWeights;
+    private final double uniformWeight;
+    
+    AggregationPlan(String skillId, long generation, List<NodeRef> refs, List<Integer> treeSlots, int treeCount) {
+        this.skillId = skillId;
+        this.generation = generation;
+        this.refs = refs.toArray(new NodeRef[0]);
+        this.treeSlots = new int[this.refs.length];
+        this.treeNames = new String[this.refs.length];
+        this.defaultWeights = new double[this.refs.length];
+        this.uniformWeight = treeCount > 0 ? 1.0 / treeCount : 1.0;
+        
+        for (int i = 0; i < this.refs.length; i++) {
+            this.treeSlots[i] = treeSlots.get(i);
+            this.treeNames[i] = this.refs[i].tree().name();
+            this.defaultWeights[i] = this.refs[i].tree().tree().weight();
+        }
+    }
+    
+    public String skillId() {
+        return skillId;
+    }
+    
+    public long generation() {
+        return generation;
+    }
+    
+    public int size() {
+        return refs.length;
+    }
+    
+    public NodeRef ref(int entry) {
+        return refs[entry];
+    }
+    
+    public int treeSlot(int entry) {
+        return treeSlots[entry];
+    }
+    
+    public String treeName(int entry) {
+        return treeNames[entry];
+    }
+    
+    public double defaultWeight(int entry) {
+        return defaultWeights[entry];
+    }
+    
+    public double uniformWeight() {
+        return uniformWeight;
+    }
+}
@@ -0,0 +1,192 @@
+package org.shotrush.atom.tree;
+
+import org.shotrush.atom.model.SkillKeyspace;
+import org.shotrush.atom.model.SkillNode;
+
+import java.util.*;
+
+public final class CompiledTree {
+    
+    private final SkillTree tree;
+    private final int slotBase;
+    private final SkillNode[] nodes;
+    private final String[] ids;
+    private final int[] keys;
+    private final int[] parents;
+    private final int[] depths;
+    private final int[][] paths;
+    private final int[] maxXp;
+    private final int[] subtreeEnds;
+    private final Map<String, Integer> ordinals;
+    private final Map<SkillNode, Integer> nodeOrdinals;
+    private final NodeRef[] refs;
+    private volatile boolean retired;
+    
+    private CompiledTree(SkillTree tree, int slotBase, List<SkillNode> order, int[] parents, int[] subtreeEnds) {
+        int size = order.size();
+        this.tree = tree;
+        this.slotBase = slotBase;
+        this.nodes = order.toArray(new SkillNode[0]);
+        this.ids = new String[size];
+        this.keys = new int[size];
+        this.parents = parents;
+        this.depths = new int[size];
+        this.paths = new int[size][];
+        this.maxXp = new int[size];
+        this.subtreeEnds = subtreeEnds;
+        
+        Map<String, Integer> ordinals = new HashMap<>();
+        IdentityHashMap<SkillNode, Integer> nodeOrdinals = new IdentityHashMap<>();
+        
+        for (int i = 0; i < size; i++) {
+            SkillNode node = nodes[i];
+            ids[i] = node.id();
+            keys[i] = SkillKeyspace.ordinal(node.id());
+            maxXp[i] = node.maxXp();
+            ordinals.putIfAbsent(node.id(), i);
+            nodeOrdinals.put(node, i);
+            
+            int parent = parents[i];
+            depths[i] = parent < 0 ? 0 : depths[parent] + 1;
+            
+            int[] path = new int[depths[i] + 1];
+            if (parent >= 0) {
+                System.arraycopy(paths[parent], 0, path, 0, path.length - 1);
+            }
+            path[path.length - 1] = i;
+            paths[i] = path;
+        }
+        
+        this.ordinals = Map.copyOf(ordinals);
+        this.nodeOrdinals = Collections.unmodifiableMap(nodeOrdinals);
+        this.refs = new NodeRef[size];
+        for (int i = 0; i < size; i++) {
+            refs[i] = new NodeRef(this, i);
+        }
+    }
+    
+    static CompiledTree compile(SkillTree tree, SlotAllocator slots) {
+        Objects.requireNonNull(tree, "tree cannot be null");
+        Objects.requireNonNull(slots, "slots cannot be null");
+        
+        List<SkillNode> order = new ArrayList<>(tree.size());
+        List<Integer> parents = new ArrayList<>(tree.size());
+        List<Integer> subtreeEnds = new ArrayList<>(tree.size());
+        visit(tree.root(), -1, order, parents, subtreeEnds);
+        
+        return new CompiledTree(tree, slots.allocate(tree.name(), order.size()), order, toArray(parents),
+            toArray(subtreeEnds));
+    }
+    
+    private static void visit(SkillNode node, int parent, List<SkillNode> order,
+                              List<Integer> parents, List<Integer> subtreeEnds) {
+        int ordinal = order.size();
+        order.add(node);
+        parents.add(parent);
+        subtreeEnds.add(ordinal + 1);
+        
+        List<SkillNode> children = new ArrayList<>(node.children().values());
+        children.sort(Comparator.comparing(SkillNode::id));
+        for (SkillNode child : children) {
+            visit(child, ordinal, order, parents, subtreeEnds);
+        }
+        
+        subtreeEnds.set(ordinal, order.size());
+    }
+    
+    private static int[] toArray(List<Integer> values) {
+        int[] array = new int[values.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = values.get(i);
+        }
+        return array;
+    }
+    
+    public SkillTree tree() {
+        return tree;
+    }
+    
+    public String name() {
+        return tree.name();
+    }
+    
+    public int size() {
+        return nodes.length;
+    }
+    
+    public int ordinal(String skillId) {
+        Integer ordinal = ordinals.get(skillId);
+        return ordinal != null ? ordinal : -1;
+    }
+    
+    public int ordinal(SkillNode node) {
+        Integer ordinal = nodeOrdinals.get(node);
+        return ordinal != null ? ordinal : -1;
+    }
+    
+    public NodeRef ref(int ordinal) {
+        return refs[ordinal];
+    }
+    
+    public SkillNode node(int ordinal) {
+        return nodes[ordinal];
+    }
+    
+    public String id(int ordinal) {
+        return ids[ordinal];
+    }
+    
+    public int key(int ordinal) {
+        return keys[ordinal];
+    }
+    
+    /**
+     * Registry-wide slot of {@code ordinal}. Slots are unique across every tree in the owning registry, so
+     * per-player memo tables can index by slot without knowing which tree a node belongs to.
+     * A recompiled tree reuses the range of the tree it replaces, so memos must not be shared
+     * across index generations.
+     */
+    public int slot(int ordinal) {
+        return slotBase + ordinal;
+    }
+    
+    void retire() {
+        retired = true;
+    }
+    
+    public boolean isRetired() {
+        return retired;
+    }
+    
+    public int parent(int ordinal) {
+        return parents[ordinal];
+    }
+    
+    public int depth(int ordinal) {
+        return depths[ordinal];
+    }
+    
+    public int maxXp(int ordinal) {
+        return maxXp[ordinal];
+    }
+    
+    /**
+     * Ordinals from the tree root down to {@code ordinal}, inclusive. The returned array is shared
+     * and must not be modified.
+     */
+    public int[] path(int ordinal) {
+        return paths[ordinal];
+    }
+    
+    /**
+     * Exclusive end of the subtree rooted at {@code ordinal}. Ordinals are assigned in pre-order, so
+     * the subtree occupies {@code [ordinal, subtreeEnd(ordinal))} and every parent precedes its children.
+     */
+    public int subtreeEnd(int ordinal) {
+        return subtreeEnds[ordinal];
+    }
+    
+    public boolean isAncestor(int ancestor, int ordinal) {
+        return ancestor <= ordinal && ordinal < subtreeEnds[ancestor];
+    }
+}
@@ -0,0 +1,89 @@
+package org.shotrush.atom.tree;
+
+import org.shotrush.atom.model.PlayerSkillData;
+import org.shotrush.atom.model.SkillKeyspace;
+import org.shotrush.atom.model.SkillNode;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+final class DynamicNodeRegistry {
+    
+    static final String PREFIX = "dynamic_";
+    static final int DEFAULT_CAPACITY = 4096;
+    
+    private final int capacity;
+    private final Map<String, SkillNode> nodes;
+    private final AtomicInteger reserved;
+    
+    DynamicNodeRegistry(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+        this.capacity = capacity;
+        this.nodes = new ConcurrentHashMap<>();
+        this.reserved = new AtomicInteger();
+    }
+    
+    static boolean isDynamic(String skillId) {
+        return skillId.startsWith(PREFIX);
+    }
+    
+    SkillNode get(String skillId) {
+        return nodes.get(skillId);
+    }
+    
+    SkillNode intern(SkillNode node) {
+        SkillNode existing = nodes.get(node.id());
+        if (existing != null) {
+            return existing;
+        }
+        if (!reserve()) {
+            return null;
+        }
+        existing = nodes.putIfAbsent(node.id(), node);
+        if (existing != null) {
+            reserved.decrementAndGet();
+            return existing;
+        }
+        return node;
+    }
+    
+    private boolean reserve() {
+        int current;
+        do {
+            current = reserved.get();
+            if (current >= capacity) {
+                return false;
+            }
+        } while (!reserved.compareAndSet(current, current + 1));
+        return true;
+    }
+    
+    int evictUnused(Collection<PlayerSkillData> players) {
+        int evicted = 0;
+        for (Map.Entry<String, SkillNode> entry : nodes.entrySet()) {
+            int key = SkillKeyspace.lookup(entry.getKey());
+            if ((key < 0 || !hasXp(players, key)) && nodes.remove(entry.getKey(), entry.getValue())) {
+                reserved.decrementAndGet();
+                evicted++;
+            }
+        }
+        return evicted;
+    }
+    
+    private static boolean hasXp(Collection<PlayerSkillData> players, int key) {
+        for (PlayerSkillData data : players) {
+            if (data.hasXp(key)) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    int size() {
+        return nodes.size();
+    }
+}
@@ -11,24 +11,63 @@ import java.util.concurrent.ConcurrentHashMap;
 
 public final class MultiTreeAggregator {
     
+    private static final long DEFAULT_RECOMPUTE_INTERVAL_MILLIS = 30_000L;
+    
     private final SkillTreeRegistry registry;
-    private final Map<UUID, Map<String, Double>> playerTreeWeights;
+    private final long recomputeIntervalMillis;
+    private final Map<UUID, WeightState> playerWeightStates;
     
     public MultiTreeAggregator(SkillTreeRegistry registry) {
+        this(registry, DEFAULT_RECOMPUTE_INTERVAL_MILLIS);
+    }
+    
+    public MultiTreeAggregator(SkillTreeRegistry registry, long recomputeIntervalMillis) {
+        if (recomputeIntervalMillis < 0) {
+            throw new IllegalArgumentException("Recompute interval cannot be negative");
+        }
         this.registry = registry;
-        this.playerTreeWeights = new ConcurrentHashMap<>();
+        this.recomputeIntervalMillis = recomputeIntervalMillis;
+        this.playerWeightStates = new ConcurrentHashMap<>();
+    }
+    
+    public void recordXpDelta(PlayerSkillData playerData, String skillId, long newXp, long delta) {
+        WeightState state = playerWeightStates.get(playerData.playerId());
+        if (state == null || delta == 0) {
+            return;
+        }
+        
+        Map<String, SkillNode> allNodes = registry.nodeIndex().nodes();
+        if (!allNodes.containsKey(skillId)) {
+            return;
+        }
+        
+        long oldXp = newXp - delta;
+        String before = DepthProgression.groupName(skillId, oldXp, playerData, allNodes);
+        String after = DepthProgression.groupName(skillId, newXp, playerData, allNodes);
+        state.recordXp(before, oldXp, after, newXp);
     }
     
     public void updatePlayerWeights(UUID playerId, PlayerSkillData playerData) {
-        Map<String, SkillNode> allNodes = buildNodeIndex();
+        WeightState state = playerWeightStates.get(playerId);
+        if (state == null || state.isDue(System.currentTimeMillis(), recomputeIntervalMillis)) {
+            recomputePlayerWeights(playerId, playerData);
+        } else {
+            state.publish(registry.nodeIndex());
+        }
+    }
+    
+    public void recomputePlayerWeights(UUID playerId, PlayerSkillData playerData) {
+        Map<String, SkillNode> allNodes = registry.nodeIndex().nodes();
         Map<String, SpecializationMetrics> metrics = DepthProgression.calculateSpecialization(playerData, allNodes);
-        Map<String, Double> weights = DepthProgression.calculateTreeWeights(playerData, allNodes, metrics);
+        Map<String, Long> treeXp = DepthProgression.calculateTreeXp(playerData, allNodes);
         
-        playerTreeWeights.put(playerId, weights);
+        playerWeightStates.computeIfAbsent(playerId, id -> new WeightState())
+            .reset(metrics, treeXp, System.currentTimeMillis(), registry.nodeIndex());
     }
     
     public Map<String, Double> getPlayerWeights(UUID playerId) {
-        return playerTreeWeights.getOrDefault(playerId, getDefaultWeights());
+        WeightState state = playerWeightStates.get(playerId);
+        return state != null ? state.weights() : getDefaultWeights();
     }
     
     private Map<String, Double> getDefaultWeights() {
@@ -78,13 +117,57 @@ public final class MultiTreeAggregator {
         return EffectiveXp.of(finalIntrinsic, finalHonorary, maxXp);
     }
     
+    public EffectiveXp aggregateXp(UUID playerId, AggregationPlan plan, EffectiveXp[] values) {
+        WeightState state = playerWeightStates.get(playerId);
+        double[] slotWeights = state != null ? state.slotWeights(plan.generation()) : null;
+        
+        double totalWeight = 0.0;
+        long weightedIntrinsic = 0;
+        long weightedHonorary = 0;
+        int maxXp = 0;
+        
+        for (int entry = 0; entry < plan.size(); entry++) {
+            EffectiveXp xp = values[entry];
+            double weight = weightOf(state, slotWeights, plan, entry);
+            
+            weightedIntrinsic += (long) (xp.intrinsicXp() * weight);
+            weightedHonorary += (long) (xp.honoraryXp() * weight);
+            totalWeight += weight;
+            
+            if (maxXp == 0) {
+                maxXp = (int) (xp.intrinsicXp() + xp.honoraryXp());
+            }
+        }
+        
+        if (totalWeight == 0.0) {
+            return EffectiveXp.zero();
+        }
+        
+        long finalIntrinsic = (long) (weightedIntrinsic / totalWeight);
+        long finalHonorary = (long) (weightedHonorary / totalWeight);
+        
+        return EffectiveXp.of(finalIntrinsic, finalHonorary, maxXp);
+    }
+    
+    private static double weightOf(WeightState state, double[] slotWeights, AggregationPlan plan, int entry) {
+        if (state == null) {
+            return plan.uniformWeight();
+        }
+        if (slotWeights != null) {
+            double weight = slotWeights[plan.treeSlot(entry)];
+            return Double.isNaN(weight) ? plan.defaultWeight(entry) : weight;
+        }
+        Double weight = state.weights().get(plan.treeName(entry));
+        return weight != null ? weight : plan.defaultWeight(entry);
+    }
+    
     public void clearPlayerWeights(UUID playerId) {
-        playerTreeWeights.remove(playerId);
+        playerWeightStates.remove(playerId);
     }
     
     public Map<String, TreeInfluence> analyzeTreeInfluence(UUID playerId, PlayerSkillData playerData) {
         Map<String, Double> weights = getPlayerWeights(playerId);
-        Map<String, SkillNode> allNodes = buildNodeIndex();
+        Map<String, SkillNode> allNodes = registry.nodeIndex().nodes();
         Map<String, SpecializationMetrics> metrics = DepthProgression.calculateSpecialization(playerData, allNodes);
         
         Map<String, TreeInfluence> influence = new HashMap<>();
@@ -107,16 +190,75 @@ public final class MultiTreeAggregator {
         return influence;
     }
     
-    private Map<String, SkillNode> buildNodeIndex() {
-        Map<String, SkillNode> allNodes = new HashMap<>();
+    private static final class WeightState {
         
-        for (SkillTree tree : registry.getAllTrees()) {
-            for (String skillId : tree.getAllSkillIds()) {
-                tree.getNode(skillId).ifPresent(node -> allNodes.putIfAbsent(skillId, node));
+        private final Map<String, Double> activityFactors = new HashMap<>();
+        private final Map<String, Long> treeXp = new HashMap<>();
+        private volatile Map<String, Double> weights = Map.of();
+        private volatile SlotWeights slotWeights;
+        private long lastRecompute;
+        private boolean dirty;
+        
+        synchronized void reset(Map<String, SpecializationMetrics> metrics, Map<String, Long> xp, long now,
+                                NodeIndex index) {
+            activityFactors.clear();
+            for (Map.Entry<String, SpecializationMetrics> entry : metrics.entrySet()) {
+                activityFactors.put(entry.getKey(), DepthProgression.activityFactor(entry.getValue()));
+            }
+            treeXp.clear();
+            treeXp.putAll(xp);
+            lastRecompute = now;
+            dirty = true;
+            publish(index);
+        }
+        
+        synchronized void recordXp(String before, long oldXp, String after, long newXp) {
+            treeXp.merge(before, -oldXp, Long::sum);
+            treeXp.merge(after, newXp, Long::sum);
+            dirty = true;
+        }
+        
+        synchronized boolean isDue(long now, long intervalMillis) {
+            return now - lastRecompute >= intervalMillis;
+        }
+        
+        synchronized void publish(NodeIndex index) {
+            if (dirty) {
+                Map<String, Double> treeActivity = new HashMap<>();
+                for (Map.Entry<String, Long> entry : treeXp.entrySet()) {
+                    Double factor = activityFactors.get(entry.getKey());
+                    treeActivity.put(entry.getKey(), entry.getValue() * (factor != null ? factor : 0.0));
+                }
+                weights = Collections.unmodifiableMap(DepthProgression.normalizeTreeActivity(treeActivity));
+                dirty = false;
+            } else if (slotWeights != null && slotWeights.generation() == index.generation()) {
+                return;
             }
+            
+            slotWeights = SlotWeights.of(weights, index);
         }
         
-        return allNodes;
+        Map<String, Double> weights() {
+            return weights;
+        }
+        
+        double[] slotWeights(long generation) {
+            SlotWeights current = slotWeights;
+            return current != null && current.generation() == generation ? current.weights() : null;
+        }
+    }
+    
+    private record SlotWeights(long generation, double[] weights) {
+        
+        static SlotWeights of(Map<String, Double> weights, NodeIndex index) {
+            List<CompiledTree> trees = index.compiledTrees();
+            double[] values = new double[trees.size()];
+            for (int slot = 0; slot < values.length; slot++) {
+                Double weight = weights.get(trees.get(slot).name());
+                values[slot] = weight != null ? weight : Double.NaN;
+            }
+            return new SlotWeights(index.generation(), values);
+        }
     }
     
     public record TreeInfluence(
@@ -0,0 +1,97 @@
+package org.shotrush.atom.tree;
+
+import org.shotrush.atom.model.SkillNode;
+
+import java.util.Collection;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public final class NodeIndex {
+    
+    private final long generation;
+    private final Map<String, NodeRef> refs;
+    private final Map<String, SkillNode> nodes;
+    private final List<CompiledTree> compiledTrees;
+    private final Map<String, AggregationPlan> plans;
+    private final DynamicNodeRegistry dynamicNodes;
+    private final int slotCount;
+    
+    NodeIndex(long generation, Map<String, NodeRef> refs, Collection<CompiledTree> compiledTrees,
+              int maxDynamicNodes, int slotCount) {
+        this.generation = generation;
+        this.refs = Map.copyOf(refs);
+        
+        Map<String, SkillNode> nodes = new HashMap<>(refs.size() * 2);
+        for (Map.Entry<String, NodeRef> entry : refs.entrySet()) {
+            nodes.put(entry.getKey(), entry.getValue().node());
+        }
+        this.nodes = Map.copyOf(nodes);
+        this.compiledTrees = List.copyOf(compiledTrees);
+        this.plans = buildPlans(generation, this.compiledTrees);
+        this.dynamicNodes = new DynamicNodeRegistry(maxDynamicNodes);
+        this.slotCount = slotCount;
+    }
+    
+    private static Map<String, AggregationPlan> buildPlans(long generation, List<CompiledTree> compiledTrees) {
+        Map<String, List<NodeRef>> refsById = new HashMap<>();
+        Map<String, List<Integer>> slotsById = new HashMap<>();
+        
+        for (int treeSlot = 0; treeSlot < compiledTrees.size(); treeSlot++) {
+            CompiledTree compiled = compiledTrees.get(treeSlot);
+            for (int ordinal = 0; ordinal < compiled.size(); ordinal++) {
+                String skillId = compiled.id(ordinal);
+                refsById.computeIfAbsent(skillId, k -> new ArrayList<>()).add(compiled.ref(ordinal));
+                slotsById.computeIfAbsent(skillId, k -> new ArrayList<>()).add(treeSlot);
+            }
+        }
+        
+        Map<String, AggregationPlan> plans = new HashMap<>();
+        for (Map.Entry<String, List<NodeRef>> entry : refsById.entrySet()) {
+            if (entry.getValue().size() > 1) {
+                String skillId = entry.getKey();
+                plans.put(skillId, new AggregationPlan(skillId, generation, entry.getValue(),
+                    slotsById.get(skillId), compiledTrees.size()));
+            }
+        }
+        return Map.copyOf(plans);
+    }
+    
+    public long generation() {
+        return generation;
+    }
+    
+    public int slotCount() {
+        return slotCount;
+    }
+    
+    public Map<String, SkillNode> nodes() {
+        return nodes;
+    }
+    
+    public SkillNode node(String skillId) {
+        SkillNode node = nodes.get(skillId);
+        return node != null ? node : dynamicNodes.get(skillId);
+    }
+    
+    DynamicNodeRegistry dynamicNodes() {
+        return dynamicNodes;
+    }
+    
+    public NodeRef ref(String skillId) {
+        return refs.get(skillId);
+    }
+    
+    public List<CompiledTree> compiledTrees() {
+        return compiledTrees;
+    }
+    
+    public AggregationPlan plan(String skillId) {
+        return plans.get(skillId);
+    }
+    
+    public int size() {
+        return nodes.size();
+    }
+}
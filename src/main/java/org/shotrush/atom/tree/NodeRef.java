@@ -0,0 +1,30 @@
+package org.shotrush.atom.tree;
+
+import org.shotrush.atom.model.SkillNode;
+
+public record NodeRef(CompiledTree tree, int ordinal) {
+    
+    public SkillNode node() {
+        return tree.node(ordinal);
+    }
+    
+    public String id() {
+        return tree.id(ordinal);
+    }
+    
+    public int key() {
+        return tree.key(ordinal);
+    }
+    
+    public int slot() {
+        return tree.slot(ordinal);
+    }
+    
+    public int depth() {
+        return tree.depth(ordinal);
+    }
+    
+    public int maxXp() {
+        return tree.maxXp(ordinal);
+    }
+}
@@ -1,5 +1,6 @@
 package org.shotrush.atom.tree;
 
+import org.shotrush.atom.model.PlayerSkillData;
 import org.shotrush.atom.model.SkillNode;
 
 import java.util.*;
@@ -9,25 +10,52 @@ public final class SkillTreeRegistry {
     
     private final Map<String, SkillTree> trees;
     private final Map<String, Set<String>> skillToTreesIndex;
+    private final Map<String, CompiledTree> compiledTrees;
+    private final Map<String, NodeRef> nodeRefs;
+    private final SlotAllocator slots;
+    private final int maxDynamicNodes;
+    private volatile NodeIndex nodeIndex;
     
     public SkillTreeRegistry() {
+        this(DynamicNodeRegistry.DEFAULT_CAPACITY);
+    }
+    
+    public SkillTreeRegistry(int maxDynamicNodes) {
         this.trees = new ConcurrentHashMap<>();
         this.skillToTreesIndex = new ConcurrentHashMap<>();
+        this.compiledTrees = new ConcurrentHashMap<>();
+        this.nodeRefs = new ConcurrentHashMap<>();
+        this.slots = new SlotAllocator();
+        this.maxDynamicNodes = maxDynamicNodes;
+        this.nodeIndex = new NodeIndex(0, Map.of(), List.of(), maxDynamicNodes, 0);
     }
     
-    public void registerTree(SkillTree tree) {
+    public synchronized void registerTree(SkillTree tree) {
         Objects.requireNonNull(tree, "tree cannot be null");
         
+        if (trees.containsKey(tree.name())) {
+            unregisterTree(tree.name());
+        }
+        
+        CompiledTree compiled = CompiledTree.compile(tree, slots);
         trees.put(tree.name(), tree);
+        compiledTrees.put(tree.name(), compiled);
         
         for (String skillId : tree.getAllSkillIds()) {
             skillToTreesIndex.computeIfAbsent(skillId, k -> ConcurrentHashMap.newKeySet())
                 .add(tree.name());
+            nodeRefs.putIfAbsent(skillId, compiled.ref(compiled.ordinal(skillId)));
         }
+        
+        publishIndex();
     }
     
-    public void unregisterTree(String treeName) {
+    public synchronized void unregisterTree(String treeName) {
         SkillTree removed = trees.remove(treeName);
+        CompiledTree compiled = compiledTrees.remove(treeName);
+        if (compiled != null) {
+            compiled.retire();
+        }
         if (removed != null) {
             for (String skillId : removed.getAllSkillIds()) {
                 Set<String> treeNames = skillToTreesIndex.get(skillId);
@@ -37,10 +65,33 @@ public final class SkillTreeRegistry {
                         skillToTreesIndex.remove(skillId);
                     }
                 }
+                
+                NodeRef ref = nodeRefs.get(skillId);
+                if (ref != null && ref.tree() == compiled) {
+                    nodeRefs.remove(skillId);
+                    for (CompiledTree other : compiledTrees.values()) {
+                        int ordinal = other.ordinal(skillId);
+                        if (ordinal >= 0) {
+                            nodeRefs.put(skillId, other.ref(ordinal));
+                            break;
+                        }
+                    }
+                }
             }
+            
+            publishIndex();
         }
     }
     
+    private void publishIndex() {
+        nodeIndex = new NodeIndex(nodeIndex.generation() + 1, nodeRefs, compiledTrees.values(), maxDynamicNodes,
+            slots.slotCount());
+    }
+    
+    public NodeIndex nodeIndex() {
+        return nodeIndex;
+    }
+    
     public Optional<SkillTree> getTree(String treeName) {
         return Optional.ofNullable(trees.get(treeName));
     }
@@ -49,32 +100,65 @@ public final class SkillTreeRegistry {
         return Collections.unmodifiableCollection(trees.values());
     }
     
+    public Optional<CompiledTree> getCompiledTree(String treeName) {
+        return Optional.ofNullable(compiledTrees.get(treeName));
+    }
+    
+    public Collection<CompiledTree> getCompiledTrees() {
+        return nodeIndex.compiledTrees();
+    }
+    
+    public NodeRef resolve(String skillId) {
+        return nodeIndex.ref(skillId);
+    }
+    
+    public NodeRef resolve(SkillNode node) {
+        for (CompiledTree compiled : nodeIndex.compiledTrees()) {
+            int ordinal = compiled.ordinal(node);
+            if (ordinal >= 0) {
+                return compiled.ref(ordinal);
+            }
+        }
+        return null;
+    }
+    
     public Set<String> getTreesContainingSkill(String skillId) {
         Set<String> treeNames = skillToTreesIndex.get(skillId);
         return treeNames != null ? Collections.unmodifiableSet(treeNames) : Collections.emptySet();
     }
     
     public Optional<SkillNode> findNode(String skillId) {
-        for (SkillTree tree : trees.values()) {
-            Optional<SkillNode> node = tree.getNode(skillId);
-            if (node.isPresent()) {
-                return node;
-            }
+        return findNode(nodeIndex, skillId);
+    }
+    
+    private Optional<SkillNode> findNode(NodeIndex index, String skillId) {
+        NodeRef ref = index.ref(skillId);
+        if (ref != null) {
+            return Optional.of(ref.node());
         }
         
-        if (skillId.startsWith("dynamic_")) {
-            return generateDynamicNode(skillId);
+        if (DynamicNodeRegistry.isDynamic(skillId)) {
+            return findDynamicNode(index, skillId);
         }
         
         return Optional.empty();
     }
     
-    private Optional<SkillNode> generateDynamicNode(String skillId) {
+    private Optional<SkillNode> findDynamicNode(NodeIndex index, String skillId) {
+        DynamicNodeRegistry dynamicNodes = index.dynamicNodes();
+        SkillNode interned = dynamicNodes.get(skillId);
+        if (interned != null) {
+            return Optional.of(interned);
+        }
+        return generateDynamicNode(index, skillId).map(dynamicNodes::intern);
+    }
+    
+    private Optional<SkillNode> generateDynamicNode(NodeIndex index, String skillId) {
         String[] parts = skillId.split("\\.");
         if (parts.length < 4) return Optional.empty();
         
         String parentId = String.join(".", java.util.Arrays.copyOf(parts, parts.length - 1));
-        Optional<SkillNode> parentOpt = findNode(parentId);
+        Optional<SkillNode> parentOpt = findNode(index, parentId);
         
         if (parentOpt.isEmpty() || parentOpt.get().depth() < 2) {
             return Optional.empty();
@@ -99,16 +183,27 @@ public final class SkillTreeRegistry {
         for (SkillTree tree : trees.values()) {
             tree.getNode(skillId).ifPresent(nodes::add);
         }
-        if (skillId.startsWith("dynamic_")) {
-            Optional<SkillNode> dynamicNode = generateDynamicNode(skillId);
-            dynamicNode.ifPresent(nodes::add);
+        if (DynamicNodeRegistry.isDynamic(skillId)) {
+            findDynamicNode(nodeIndex, skillId).ifPresent(nodes::add);
         }
         return nodes;
     }
     
-    public void clear() {
+    public int evictDynamicNodes(Collection<PlayerSkillData> players) {
+        return nodeIndex.dynamicNodes().evictUnused(players);
+    }
+    
+    public int dynamicNodeCount() {
+        return nodeIndex.dynamicNodes().size();
+    }
+    
+    public synchronized void clear() {
+        compiledTrees.values().forEach(CompiledTree::retire);
         trees.clear();
         skillToTreesIndex.clear();
+        compiledTrees.clear();
+        nodeRefs.clear();
+        publishIndex();
     }
     
     public int treeCount() {
@@ -0,0 +1,28 @@
+package org.shotrush.atom.tree;
+
+import java.util.HashMap;
+import java.util.Map;
+
+final class SlotAllocator {
+    
+    private final Map<String, SlotRange> ranges = new HashMap<>();
+    private int nextSlot;
+    
+    synchronized int allocate(String treeName, int size) {
+        SlotRange range = ranges.get(treeName);
+        if (range == null || range.capacity() < size) {
+            int capacity = range == null ? size : Math.max(size, range.capacity() * 2);
+            range = new SlotRange(nextSlot, capacity);
+            nextSlot += capacity;
+            ranges.put(treeName, range);
+        }
+        return range.base();
+    }
+    
+    synchronized int slotCount() {
+        return nextSlot;
+    }
+    
+    private record SlotRange(int base, int capacity) {
+    }
+}
@@ -0,0 +1,132 @@
+package org.shotrush.atom.storage;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.shotrush.atom.model.PlayerSkillData;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PackedRecordFormatTest {
+    
+    private Connection conn;
+    
+    @BeforeEach
+    void openDatabase() throws SQLException {
+        conn = DriverManager.getConnection("jdbc:sqlite::memory:");
+    }
+    
+    @AfterEach
+    void closeDatabase() throws SQLException {
+        conn.close();
+    }
+    
+    @Test
+    void roundTripsRecordsThroughTheDictionary() throws SQLException {
+        UUID playerId = UUID.randomUUID();
+        PlayerSkillData data = new PlayerSkillData(playerId);
+        data.setIntrinsicXp("packed.mining", 300L);
+        data.setIntrinsicXp("packed.mining.stone", 1L << 40);
+        data.setIntrinsicXp("packed.farming", 0L);
+        
+        PackedRecordFormat format = new PackedRecordFormat();
+        format.createTables(conn);
+        format.write(conn, List.of(data), List.of(data.drainDelta()));
+        format.afterCommit();
+        
+        Map<String, Long> expected = Map.of("packed.mining", 300L, "packed.mining.stone", 1L << 40, "packed.farming", 0L);
+        assertEquals(Optional.of(expected), format.load(conn, playerId));
+        
+        PackedRecordFormat reopened = new PackedRecordFormat();
+        reopened.createTables(conn);
+        assertEquals(Optional.of(expected), reopened.load(conn, playerId));
+        assertEquals(Optional.empty(), reopened.load(conn, UUID.randomUUID()));
+    }
+    
+    @Test
+    void rejectsTruncatedRecords() throws SQLException {
+        UUID playerId = UUID.randomUUID();
+        PlayerSkillData data = new PlayerSkillData(playerId);
+        data.setIntrinsicXp("packed.mining", 1L << 40);
+        
+        PackedRecordFormat format = new PackedRecordFormat();
+        format.createTables(conn);
+        format.write(conn, List.of(data), List.of(data.drainDelta()));
+        format.afterCommit();
+        
+        try (Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate("UPDATE atom_player_records SET record = substr(record, 1, length(record) - 1)");
+        }
+        
+        SQLException error = assertThrows(SQLException.class, () -> format.load(conn, playerId));
+        assertEquals("Truncated player record", error.getMessage());
+    }
+    
+    @Test
+    void migratesBetweenFormatsAndKeepsLegacyTables() throws SQLException {
+        UUID playerId = UUID.randomUUID();
+        PlayerSkillData data = new PlayerSkillData(playerId);
+        data.setIntrinsicXp("packed.combat", 12L);
+        data.setIntrinsicXp("packed.combat.sword", 34L);
+        
+        RowRecordFormat rows = new RowRecordFormat();
+        rows.createTables(conn);
+        rows.write(conn, List.of(data), List.of(data.drainDelta()));
+        
+        PackedRecordFormat packed = new PackedRecordFormat();
+        packed.createTables(conn);
+        assertEquals(Optional.of(data.getAllIntrinsicXp()), packed.load(conn, playerId));
+        assertTrue(PackedRecordFormat.tableExists(conn, "atom_skills_legacy"));
+        assertFalse(PackedRecordFormat.tableExists(conn, "atom_skills"));
+        
+        data.setIntrinsicXp("packed.combat", 56L);
+        packed.write(conn, List.of(data), List.of(data.drainDelta()));
+        packed.afterCommit();
+        
+        RowRecordFormat restored = new RowRecordFormat();
+        restored.createTables(conn);
+        assertEquals(Optional.of(Map.of("packed.combat", 56L, "packed.combat.sword", 34L)),
+            restored.load(conn, playerId));
+        assertTrue(PackedRecordFormat.tableExists(conn, "atom_player_records_legacy"));
+        assertFalse(PackedRecordFormat.tableExists(conn, "atom_player_records"));
+    }
+    
+    @Test
+    void pagesRecordsAndImportsThemWithTheirTimestamps() throws SQLException {
+        PlayerRecordFormat.StoredRecord first = new PlayerRecordFormat.StoredRecord(
+            UUID.randomUUID(), 1_000L, Map.of("packed.mining", 7L));
+        PlayerRecordFormat.StoredRecord second = new PlayerRecordFormat.StoredRecord(
+            UUID.randomUUID(), 2_000L, Map.of());
+        PlayerRecordFormat.StoredRecord third = new PlayerRecordFormat.StoredRecord(
+            UUID.randomUUID(), 3_000L, Map.of("packed.fishing", 9L, "packed.fishing.cod", 4L));
+        
+        for (PlayerRecordFormat format : List.of(new RowRecordFormat(), new PackedRecordFormat())) {
+            format.createTables(conn);
+            format.importRecords(conn, List.of(first, second, third));
+            format.afterCommit();
+            
+            List<PlayerRecordFormat.StoredRecord> paged = new ArrayList<>();
+            UUID after = null;
+            List<PlayerRecordFormat.StoredRecord> page;
+            while (!(page = format.readPage(conn, after, 2)).isEmpty()) {
+                assertTrue(page.size() <= 2);
+                paged.addAll(page);
+                after = page.get(page.size() - 1).playerId();
+            }
+            
+            assertEquals(Set.of(first, second, third), Set.copyOf(paged));
+            assertEquals(3, paged.size());
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package org.shotrush.atom.storage;
+
+import org.junit.jupiter.api.Test;
+import org.shotrush.atom.model.PlayerSkillData;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WriteBehindQueueTest {
+    
+    @Test
+    void isolatesAndRetriesAPoisonedRecord() {
+        PoisonableStorage storage = new PoisonableStorage();
+        WriteBehindQueue queue = new WriteBehindQueue(storage, 256, 60_000L);
+        try {
+            List<PlayerSkillData> players = new ArrayList<>();
+            for (int i = 0; i < 10; i++) {
+                PlayerSkillData data = new PlayerSkillData(UUID.randomUUID());
+                data.setIntrinsicXp("queue.mining", i + 1L);
+                players.add(data);
+            }
+            PlayerSkillData poisoned = players.get(3);
+            storage.poisoned.add(poisoned.playerId());
+            
+            List<CompletableFuture<Void>> futures = players.stream().map(queue::enqueue).toList();
+            queue.flush().join();
+            
+            assertEquals(9, storage.saved.size());
+            assertFalse(storage.saved.containsKey(poisoned.playerId()));
+            assertEquals(1, queue.failedBatches());
+            assertThrows(CompletionException.class, () -> futures.get(3).join());
+            assertSame(poisoned, queue.pendingData(poisoned.playerId()).orElseThrow());
+            
+            storage.poisoned.clear();
+            queue.flush().join();
+            
+            assertEquals(Map.of("queue.mining", 4L), storage.saved.get(poisoned.playerId()));
+            assertTrue(queue.pendingData(poisoned.playerId()).isEmpty());
+            assertEquals(0, queue.pendingCount());
+        } finally {
+            queue.close();
+        }
+    }
+    
+    private static final class PoisonableStorage implements StorageProvider {
+        
+        private final Map<UUID, Map<String, Long>> saved = new ConcurrentHashMap<>();
+        private final Set<UUID> poisoned = ConcurrentHashMap.newKeySet();
+        
+        @Override
+        public CompletableFuture<Void> initialize() {
+            return CompletableFuture.completedFuture(null);
+        }
+        
+        @Override
+        public CompletableFuture<Void> shutdown() {
+            return CompletableFuture.completedFuture(null);
+        }
+        
+        @Override
+        public CompletableFuture<Optional<PlayerSkillData>> loadPlayerData(UUID playerId) {
+            return CompletableFuture.completedFuture(Optional.empty());
+        }
+        
+        @Override
+        public CompletableFuture<Void> savePlayerData(PlayerSkillData playerData) {
+            return savePlayerDataBatch(List.of(playerData));
+        }
+        
+        @Override
+        public CompletableFuture<Void> savePlayerDataBatch(Collection<PlayerSkillData> players) {
+            for (PlayerSkillData data : players) {
+                if (poisoned.contains(data.playerId())) {
+                    return CompletableFuture.failedFuture(new StorageException("Poisoned record " + data.playerId()));
+                }
+            }
+            for (PlayerSkillData data : players) {
+                saved.put(data.playerId(), data.getAllIntrinsicXp());
+            }
+            return CompletableFuture.completedFuture(null);
+        }
+        
+        @Override
+        public CompletableFuture<Void> deletePlayerData(UUID playerId) {
+            saved.remove(playerId);
+            return CompletableFuture.completedFuture(null);
+        }
+        
+        @Override
+        public CompletableFuture<Boolean> playerDataExists(UUID playerId) {
+            return CompletableFuture.completedFuture(saved.containsKey(playerId));
+        }
+    }
+}
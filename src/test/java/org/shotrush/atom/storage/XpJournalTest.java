@@ -0,0 +1,208 @@
+package org.shotrush.atom.storage;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.shotrush.atom.model.PlayerSkillData;
+import org.shotrush.atom.model.SkillKeyspace;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class XpJournalTest {
+    
+    private static final int SEGMENT_SIZE = 4096;
+    private static final long SYNC_INTERVAL = 60_000L;
+    
+    @TempDir
+    Path directory;
+    
+    @Test
+    void replaysChangesAfterReopen() {
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+        MemoryStorage storage = new MemoryStorage();
+        storage.put(new PlayerSkillData(first, Map.of("journal.farming", 5L)));
+        
+        XpJournal journal = XpJournal.open(directory, SEGMENT_SIZE, SYNC_INTERVAL);
+        journal.xpChanged(first, SkillKeyspace.ordinal("journal.mining"), 42L);
+        journal.xpChanged(first, SkillKeyspace.ordinal("journal.mining.stone"), 1L << 40);
+        journal.xpChanged(first, SkillKeyspace.ordinal("journal.mining"), 43L);
+        journal.skillRemoved(first, SkillKeyspace.ordinal("journal.farming"));
+        journal.xpChanged(second, SkillKeyspace.ordinal("journal.combat"), 7L);
+        journal.close();
+        
+        XpJournal reopened = XpJournal.open(directory, SEGMENT_SIZE, SYNC_INTERVAL);
+        try {
+            assertEquals(2, reopened.replay(storage));
+            assertEquals(Map.of("journal.mining", 43L, "journal.mining.stone", 1L << 40), storage.skills(first));
+            assertEquals(Map.of("journal.combat", 7L), storage.skills(second));
+            assertEquals(0, reopened.replay(storage));
+        } finally {
+            reopened.close();
+        }
+    }
+    
+    @Test
+    void completedCheckpointDropsSealedEntries() {
+        UUID playerId = UUID.randomUUID();
+        
+        XpJournal journal = XpJournal.open(directory, SEGMENT_SIZE, SYNC_INTERVAL);
+        journal.xpChanged(playerId, SkillKeyspace.ordinal("journal.fishing"), 10L);
+        journal.close();
+        
+        journal = XpJournal.open(directory, SEGMENT_SIZE, SYNC_INTERVAL);
+        journal.beginCheckpoint().complete();
+        journal.xpChanged(playerId, SkillKeyspace.ordinal("journal.woodcutting"), 3L);
+        journal.close();
+        
+        MemoryStorage storage = new MemoryStorage();
+        XpJournal reopened = XpJournal.open(directory, SEGMENT_SIZE, SYNC_INTERVAL);
+        try {
+            assertEquals(1, reopened.replay(storage));
+            assertEquals(Map.of("journal.woodcutting", 3L), storage.skills(playerId));
+        } finally {
+            reopened.close();
+        }
+    }
+    
+    @Test
+    void ignoresUncommittedTail() throws IOException {
+        UUID playerId = UUID.randomUUID();
+        
+        XpJournal journal = XpJournal.open(directory, SEGMENT_SIZE, SYNC_INTERVAL);
+        journal.xpChanged(playerId, SkillKeyspace.ordinal("journal.mining"), 42L);
+        journal.close();
+        
+        appendToTail(new byte[] {0, 0, 0, 99});
+        
+        MemoryStorage storage = new MemoryStorage();
+        XpJournal reopened = XpJournal.open(directory, SEGMENT_SIZE, SYNC_INTERVAL);
+        try {
+            assertEquals(1, reopened.replay(storage));
+            assertEquals(Map.of("journal.mining", 42L), storage.skills(playerId));
+        } finally {
+            reopened.close();
+        }
+    }
+    
+    @Test
+    void discardsTornTailAndKeepsAppending() throws IOException {
+        UUID playerId = UUID.randomUUID();
+        
+        XpJournal journal = XpJournal.open(directory, SEGMENT_SIZE, SYNC_INTERVAL);
+        journal.xpChanged(playerId, SkillKeyspace.ordinal("journal.mining"), 42L);
+        journal.close();
+        
+        appendToTail(new byte[] {3, 7, 0, 99});
+        
+        journal = XpJournal.open(directory, SEGMENT_SIZE, SYNC_INTERVAL);
+        journal.xpChanged(playerId, SkillKeyspace.ordinal("journal.mining"), 44L);
+        journal.close();
+        
+        MemoryStorage storage = new MemoryStorage();
+        XpJournal reopened = XpJournal.open(directory, SEGMENT_SIZE, SYNC_INTERVAL);
+        try {
+            assertEquals(1, reopened.replay(storage));
+            assertEquals(Map.of("journal.mining", 44L), storage.skills(playerId));
+        } finally {
+            reopened.close();
+        }
+    }
+    
+    private void appendToTail(byte[] bytes) throws IOException {
+        for (int index = 0; index < 2; index++) {
+            Path file = directory.resolve("xp-journal-" + index + ".bin");
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                ByteBuffer buffer = ByteBuffer.allocate((int) channel.size());
+                channel.read(buffer, 0);
+                int end = tailOffset(buffer);
+                if (end > 12) {
+                    channel.write(ByteBuffer.wrap(bytes), end);
+                    return;
+                }
+            }
+        }
+        fail("No journal segment holds any entries");
+    }
+    
+    private static int tailOffset(ByteBuffer buffer) {
+        int offset = 12;
+        while (true) {
+            byte type = buffer.get(offset);
+            switch (type) {
+                case 1 -> offset = skipVarint(buffer, offset + 1) + 16;
+                case 2 -> {
+                    int lengthOffset = skipVarint(buffer, offset + 1);
+                    offset = skipVarint(buffer, lengthOffset) + buffer.get(lengthOffset);
+                }
+                case 3 -> offset = skipVarint(buffer, skipVarint(buffer, skipVarint(buffer, offset + 1)));
+                case 4 -> offset = skipVarint(buffer, skipVarint(buffer, offset + 1));
+                default -> {
+                    return offset;
+                }
+            }
+        }
+    }
+    
+    private static int skipVarint(ByteBuffer buffer, int offset) {
+        while ((buffer.get(offset) & 0x80) != 0) {
+            offset++;
+        }
+        return offset + 1;
+    }
+    
+    private static final class MemoryStorage implements StorageProvider {
+        
+        private final Map<UUID, Map<String, Long>> players = new ConcurrentHashMap<>();
+        
+        void put(PlayerSkillData data) {
+            players.put(data.playerId(), data.getAllIntrinsicXp());
+        }
+        
+        Map<String, Long> skills(UUID playerId) {
+            return players.get(playerId);
+        }
+        
+        @Override
+        public CompletableFuture<Void> initialize() {
+            return CompletableFuture.completedFuture(null);
+        }
+        
+        @Override
+        public CompletableFuture<Void> shutdown() {
+            return CompletableFuture.completedFuture(null);
+        }
+        
+        @Override
+        public CompletableFuture<Optional<PlayerSkillData>> loadPlayerData(UUID playerId) {
+            Map<String, Long> skills = players.get(playerId);
+            return CompletableFuture.completedFuture(Optional.ofNullable(skills)
+                .map(stored -> new PlayerSkillData(playerId, stored)));
+        }
+        
+        @Override
+        public CompletableFuture<Void> savePlayerData(PlayerSkillData playerData) {
+            put(playerData);
+            return CompletableFuture.completedFuture(null);
+        }
+        
+        @Override
+        public CompletableFuture<Void> deletePlayerData(UUID playerId) {
+            players.remove(playerId);
+            return CompletableFuture.completedFuture(null);
+        }
+        
+        @Override
+        public CompletableFuture<Boolean> playerDataExists(UUID playerId) {
+            return CompletableFuture.completedFuture(players.containsKey(playerId));
+        }
+    }
+}
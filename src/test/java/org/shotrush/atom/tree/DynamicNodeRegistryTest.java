@@ -0,0 +1,44 @@
+package org.shotrush.atom.tree;
+
+import org.junit.jupiter.api.Test;
+import org.shotrush.atom.model.PlayerSkillData;
+import org.shotrush.atom.model.SkillNode;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DynamicNodeRegistryTest {
+    
+    @Test
+    void refusesNewNodesAtCapacityAndKeepsInternedOnesStable() {
+        DynamicNodeRegistry registry = new DynamicNodeRegistry(2);
+        SkillNode first = registry.intern(node("dynamic_test.first"));
+        SkillNode second = registry.intern(node("dynamic_test.second"));
+        
+        assertNotNull(first);
+        assertNotNull(second);
+        assertNull(registry.intern(node("dynamic_test.third")));
+        assertSame(first, registry.intern(node("dynamic_test.first")));
+        assertEquals(2, registry.size());
+        
+        PlayerSkillData data = new PlayerSkillData(UUID.randomUUID());
+        data.setIntrinsicXp("dynamic_test.first", 5L);
+        assertEquals(1, registry.evictUnused(List.of(data)));
+        
+        SkillNode third = registry.intern(node("dynamic_test.third"));
+        assertNotNull(third);
+        assertSame(third, registry.get("dynamic_test.third"));
+        assertSame(first, registry.get("dynamic_test.first"));
+    }
+    
+    private static SkillNode node(String id) {
+        return SkillNode.builder()
+            .id(id)
+            .displayName(id)
+            .maxXp(5000)
+            .type(SkillNode.NodeType.LEAF)
+            .build();
+    }
+}